@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+// Reads numbers and keywords straight out of a mapped file, byte by byte with absolute gets, for the instance
+// loaders (KnapsackInstance, TSPInstance). Nothing is allocated per number or per line.
+final class ByteScanner {
+    // Powers of ten that are exact doubles, so mantissa * 10^e or mantissa / 10^e is a single correctly rounded
+    // operation as long as the mantissa is exact too
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int EXACT_DIGITS = 15; // any 15-digit mantissa is below 2^53
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    final Path path;
+
+    ByteScanner(ByteBuffer buffer, Path path) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.position = buffer.position();
+        this.path = path;
+    }
+
+    boolean atEnd() {
+        return position >= limit;
+    }
+
+    boolean atDigit() {
+        if (position >= limit) {
+            return false;
+        }
+        byte b = buffer.get(position);
+        return (b >= '0' && b <= '9') || b == '-';
+    }
+
+    // Like atDigit, but also accepts the other ways a decimal number can start ("+1", ".5")
+    boolean atNumber() {
+        if (atDigit()) {
+            return true;
+        }
+        if (position + 1 >= limit) {
+            return false;
+        }
+        byte b = buffer.get(position);
+        byte next = buffer.get(position + 1);
+        return (b == '+' || b == '.') && ((next >= '0' && next <= '9') || next == '.');
+    }
+
+    void skipWhitespace() {
+        while (position < limit && buffer.get(position) <= ' ') {
+            position++;
+        }
+    }
+
+    // Skips blanks, line breaks, commas, semicolons and colons, everything that may sit between two numbers
+    private void skipSeparators() {
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b > ' ' && b != ',' && b != ';' && b != ':') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    void skipLine() {
+        while (position < limit && buffer.get(position++) != '\n') {
+            // skip
+        }
+    }
+
+    // Skips blanks, tabs, commas, semicolons and colons on the current line, then tells whether the line is over
+    boolean atLineEnd() {
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == '\n') {
+                return true;
+            }
+            if (b > ' ' && b != ',' && b != ';' && b != ':') {
+                return false;
+            }
+            position++;
+        }
+        return true;
+    }
+
+    // Whether the given keyword starts here as a whole word (not followed by a letter, digit or underscore)
+    boolean atWord(String word) {
+        int end = position + word.length();
+        if (end > limit) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (buffer.get(position + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        if (end == limit) {
+            return true;
+        }
+        byte b = buffer.get(end);
+        return !((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_');
+    }
+
+    // Consumes the keyword when atWord(word)
+    boolean skipWord(String word) {
+        if (!atWord(word)) {
+            return false;
+        }
+        position += word.length();
+        return true;
+    }
+
+    // The rest of the current line without separators or surrounding blanks, for the odd header value (a name,
+    // an unsupported keyword in an error message); consumes the line
+    String restOfLine() {
+        atLineEnd();
+        int start = position;
+        skipLine();
+        int end = position;
+        while (end > start && buffer.get(end - 1) <= ' ') {
+            end--;
+        }
+        return text(start, end);
+    }
+
+    // Skips the separators up to the next number and parses it; anything else in the way is a malformed number
+    long nextLong() throws IOException {
+        skipSeparators();
+        if (position >= limit) {
+            throw new IOException("Unexpected end of file in " + path);
+        }
+        boolean negative = buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        int start = position;
+        long value = 0;
+        while (position < limit) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw new IOException("Number too large at byte " + start + " in " + path);
+            }
+            value = value * 10 + digit;
+            position++;
+        }
+        if (position == start) {
+            throw new IOException("Malformed number at byte " + position + " in " + path);
+        }
+        return negative ? -value : value;
+    }
+
+    int nextInt() throws IOException {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Number " + value + " does not fit in an int (byte " + position + " in " + path + ")");
+        }
+        return (int) value;
+    }
+
+    // Skips the separators up to the next number and parses it as a decimal ("12", "-0.5", "1.25e+03"). Numbers of up
+    // to 15 significant digits with a small exponent, i.e. every coordinate in practice, are assembled from their
+    // digits with one correctly rounded operation, which gives exactly what Double.parseDouble does; anything else
+    // goes through Double.parseDouble.
+    double nextDouble() throws IOException {
+        skipSeparators();
+        if (position >= limit) {
+            throw new IOException("Unexpected end of file in " + path);
+        }
+        if (!atNumber()) {
+            throw new IOException("Malformed number at byte " + position + " in " + path);
+        }
+        int start = position;
+        byte sign = buffer.get(position);
+        boolean negative = sign == '-';
+        if (sign == '-' || sign == '+') {
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;   // significant digits in the mantissa
+        int exponent = 0; // decimal exponent of the mantissa's last digit
+        boolean any = false;
+        boolean fraction = false;
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == '.' && !fraction) {
+                fraction = true;
+                position++;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            any = true;
+            position++;
+            if (digits < 18) { // the long can't overflow, and more than 15 digits fall back to parseDouble anyway
+                mantissa = mantissa * 10 + digit;
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (fraction) {
+                    exponent--;
+                }
+            } else {
+                digits++;
+            }
+        }
+        if (!any) {
+            throw new IOException("Malformed number at byte " + start + " in " + path);
+        }
+        if (position + 1 < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+            byte next = buffer.get(position + 1);
+            if ((next >= '0' && next <= '9') || ((next == '-' || next == '+') && position + 2 < limit
+                    && buffer.get(position + 2) >= '0' && buffer.get(position + 2) <= '9')) {
+                position += next >= '0' && next <= '9' ? 1 : 2;
+                int power = 0;
+                while (position < limit && buffer.get(position) >= '0' && buffer.get(position) <= '9') {
+                    power = Math.min(power * 10 + buffer.get(position) - '0', 100_000);
+                    position++;
+                }
+                exponent += next == '-' ? -power : power;
+            }
+        }
+        if (digits > EXACT_DIGITS || exponent < -22 || exponent > 22) {
+            return Double.parseDouble(text(start, position));
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,361 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Which cells around a cell of CellularEA's grid take part in its selection
+enum Neighborhood {
+    VON_NEUMANN(new int[]{-1, 1, 0, 0}, new int[]{0, 0, -1, 1}),                      // the 4 orthogonal neighbours
+    MOORE(new int[]{-1, -1, -1, 0, 0, 1, 1, 1}, new int[]{-1, 0, 1, -1, 1, -1, 0, 1}); // the 8 surrounding cells
+
+    final int[] rowOffsets;
+    final int[] columnOffsets;
+
+    Neighborhood(int[] rowOffsets, int[] columnOffsets) {
+        this.rowOffsets = rowOffsets;
+        this.columnOffsets = columnOffsets;
+    }
+}
+
+// Cellular knapsack EA: the individuals sit on a toroidal rows x columns grid and only ever mate with their neighbours
+// Every generation each cell breeds one child with a mate picked by a binary tournament among its neighbours, and
+// the child takes the cell's place in the next grid if it is at least as fit. Good solutions spread across the grid
+// a few cells per generation, which keeps diversity much longer than the panmictic EvolutionaryAlgorithm does.
+// The next generation is written into a second grid, so cells only ever read the previous one: the grid is cut into
+// stripes of rows that are bred in parallel without any locking, and the only synchronization is the end of the
+// generation (every stripe has to be done before the grids swap). Selection never leaves the neighbourhood, so a
+// stripe touches its own rows plus one row on either border.
+class CellularEA implements Evolver<Individual> {
+    private final int rows;
+    private final int columns;
+    private final int genotypeLength;
+    private final double crossoverProbability;
+    private final double mutationProbability;
+    private final int generations;
+    private final ReseedableRandom random;
+
+    private final KnapsackInstance instance;
+    private final int[] values;
+    private final int[] weights;
+    private final long capacity;
+
+    // Cell (r, c) is grid[r * columns + c]; breeding reads grid and writes next, then the two swap
+    private Individual[] grid;
+    private Individual[] next;
+    private Neighborhood neighborhood = Neighborhood.VON_NEUMANN;
+    private CrossoverType crossoverType = CrossoverType.UNIFORM;
+
+    // Optional parallel stripes (null means sequential), one stripe per pool thread
+    private ForkJoinPool stripePool;
+    private StripeTask[] stripes;
+
+    private Individual best; // copy of the best individual so far
+    private final List<Double> bestFitnessHistory = new ArrayList<>();
+    private DiversityTracker diversityTracker; // null means off
+    private final List<DiversitySample> diversityHistory = new ArrayList<>();
+    private int generation;
+    private long evaluations;
+
+    // Runs on a given instance, nothing is printed; the population size is rows * columns
+    public CellularEA(int rows, int columns, KnapsackInstance instance, double crossoverProbability, double mutationProbability, int generations, long seed) {
+        if (rows < 3 || columns < 3) {
+            throw new IllegalArgumentException("Grid must be at least 3 x 3: " + rows + " x " + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.genotypeLength = instance.size();
+        this.crossoverProbability = crossoverProbability;
+        this.mutationProbability = mutationProbability;
+        this.generations = generations;
+        this.random = new ReseedableRandom(seed);
+        this.instance = instance;
+        this.values = instance.values();
+        this.weights = instance.weights();
+        this.capacity = instance.getCapacity();
+
+        grid = new Individual[rows * columns];
+        next = new Individual[rows * columns];
+        for (int cell = 0; cell < grid.length; cell++) {
+            grid[cell] = new Individual(genotypeLength, random);
+            next[cell] = new Individual(new long[Individual.wordCount(genotypeLength)], genotypeLength);
+            evaluate(grid[cell]);
+        }
+        evaluations = grid.length;
+        stripes = new StripeTask[]{new StripeTask(0, rows)};
+        updateBest();
+    }
+
+    public void loop() {
+        while (generation < generations) {
+            step();
+        }
+    }
+
+    // Records the current grid, breeds the whole next grid stripe by stripe (in parallel if a pool is set), then
+    // swaps the grids. Every row draws from its own stream, seeded from the generation's seed and the row, so the
+    // result doesn't depend on the number of stripes.
+    @Override
+    public void step() {
+        recordGeneration();
+        long generationSeed = random.nextLong();
+        if (stripePool == null || stripes.length == 1) {
+            stripes[0].generationSeed = generationSeed;
+            stripes[0].call();
+        } else {
+            List<Callable<Void>> calls = new ArrayList<>(stripes.length);
+            for (StripeTask stripe : stripes) {
+                stripe.generationSeed = generationSeed;
+                calls.add(stripe);
+            }
+            // invokeAll returns once every stripe is done, that is the generation barrier
+            awaitAll(stripePool.invokeAll(calls));
+        }
+        evaluations += grid.length;
+
+        Individual[] previous = grid;
+        grid = next;
+        next = previous;
+        generation++;
+        updateBest();
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while breeding", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Stripe failed", e.getCause());
+            }
+        }
+    }
+
+    // Keeps the best individual so far up to date with the current grid
+    private void updateBest() {
+        Individual gridBest = grid[bestCell()];
+        if (best == null) {
+            best = gridBest.copy();
+        } else if (gridBest.getFitnessValue() > best.getFitnessValue()) {
+            best.copyFrom(gridBest);
+        }
+    }
+
+    private int bestCell() {
+        int bestCell = 0;
+        for (int cell = 1; cell < grid.length; cell++) {
+            if (grid[cell].getFitnessValue() > grid[bestCell].getFitnessValue()) {
+                bestCell = cell;
+            }
+        }
+        return bestCell;
+    }
+
+    // Best fitness (and diversity, if tracked) of the grid a generation starts from, like EvolutionaryAlgorithm.step
+    private void recordGeneration() {
+        bestFitnessHistory.add(grid[bestCell()].getFitnessValue());
+        if (diversityTracker != null) {
+            diversityHistory.add(diversityTracker.measure(generation, grid, grid.length));
+        }
+    }
+
+    // Breeds the rows [fromRow, toRow) of the next grid
+    // The stripe owns one stream and one engine and reseeds both in place at the start of every row
+    private class StripeTask implements Callable<Void> {
+        private final int fromRow;
+        private final int toRow;
+        private final ReseedableRandom rowRandom = new ReseedableRandom(0);
+        private final MutationEngine rowMutation = new MutationEngine(mutationProbability, 0);
+        long generationSeed;
+
+        StripeTask(int fromRow, int toRow) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        public Void call() {
+            for (int row = fromRow; row < toRow; row++) {
+                rowRandom.reseed(generationSeed + row * 0x9E3779B97F4A7C15L);
+                rowMutation.reseed(rowRandom.nextLong());
+                for (int column = 0; column < columns; column++) {
+                    breedCell(row, column, rowRandom, rowMutation);
+                }
+            }
+            return null;
+        }
+    }
+
+    // Breeds the child of cell (row, column) into the next grid and keeps it if it is at least as good as the cell
+    private void breedCell(int row, int column, ReseedableRandom cellRandom, MutationEngine cellMutation) {
+        int cell = row * columns + column;
+        Individual parent = grid[cell];
+        Individual mate = grid[neighbourTournament(row, column, cellRandom)];
+        Individual child = next[cell];
+        if (cellRandom.nextDouble() < crossoverProbability) {
+            crossover(parent, mate, child, cellRandom);
+        } else {
+            child.copyFrom(parent);
+        }
+        child.mutate(cellMutation, values, weights);
+        evaluate(child);
+        if (child.getFitnessValue() < parent.getFitnessValue()) {
+            child.copyFrom(parent);
+        }
+    }
+
+    // Binary tournament between two random neighbours of (row, column) on the torus, returns the winner's cell
+    private int neighbourTournament(int row, int column, ReseedableRandom cellRandom) {
+        int first = neighbour(row, column, cellRandom.nextInt(neighborhood.rowOffsets.length));
+        int second = neighbour(row, column, cellRandom.nextInt(neighborhood.rowOffsets.length));
+        return grid[second].getFitnessValue() > grid[first].getFitnessValue() ? second : first;
+    }
+
+    private int neighbour(int row, int column, int k) {
+        int r = row + neighborhood.rowOffsets[k];
+        int c = column + neighborhood.columnOffsets[k];
+        r = r < 0 ? r + rows : r >= rows ? r - rows : r;
+        c = c < 0 ? c + columns : c >= columns ? c - columns : c;
+        return r * columns + c;
+    }
+
+    // One child: a copy of parent1 that takes parent2's bits in the crossover's positions, a word at a time
+    // Only the taken bits that differ change the running totals
+    private void crossover(Individual parent1, Individual parent2, Individual child, ReseedableRandom cellRandom) {
+        child.copyFrom(parent1);
+        long[] childBits = child.getBits();
+        long[] mateBits = parent2.getBits();
+        long value = child.getTotalValue();
+        long weight = child.getTotalWeight();
+        int from;
+        int to;
+        switch (crossoverType) {
+            case SINGLE_POINT:
+                from = cellRandom.nextInt(genotypeLength - 1) + 1;
+                to = genotypeLength;
+                break;
+            case TWO_POINT:
+                from = cellRandom.nextInt(genotypeLength);
+                to = cellRandom.nextInt(genotypeLength);
+                if (from > to) {
+                    int temp = from;
+                    from = to;
+                    to = temp;
+                }
+                to++;
+                break;
+            default:
+                from = 0;
+                to = genotypeLength;
+                break;
+        }
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        for (int w = firstWord; w <= lastWord; w++) {
+            long mask = crossoverType == CrossoverType.UNIFORM ? cellRandom.nextLong() : -1L;
+            if (w == firstWord) {
+                mask &= -1L << from;
+            }
+            if (w == lastWord) {
+                mask &= -1L >>> -to;
+            }
+            long diff = (childBits[w] ^ mateBits[w]) & mask;
+            for (long gained = diff & mateBits[w]; gained != 0; gained &= gained - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(gained);
+                value += values[i];
+                weight += weights[i];
+            }
+            for (long lost = diff & childBits[w]; lost != 0; lost &= lost - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(lost);
+                value -= values[i];
+                weight -= weights[i];
+            }
+            childBits[w] ^= diff;
+        }
+        child.setTotals(value, weight);
+        child.clearFitness();
+    }
+
+    // Fitness from the running totals, computed in full only for the random initial individuals
+    private void evaluate(Individual individual) {
+        if (!individual.hasTotals()) {
+            long totalValue = 0;
+            long totalWeight = 0;
+            long[] bits = individual.getBits();
+            for (int w = 0; w < bits.length; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    totalValue += values[i];
+                    totalWeight += weights[i];
+                }
+            }
+            individual.setTotals(totalValue, totalWeight);
+        }
+        individual.setFitness(EvolutionaryAlgorithm.knapsackFitness(individual.getTotalValue(), individual.getTotalWeight(), capacity));
+    }
+
+    public void setNeighborhood(Neighborhood neighborhood) {
+        this.neighborhood = neighborhood;
+    }
+
+    public void setCrossoverType(CrossoverType crossoverType) {
+        this.crossoverType = crossoverType;
+    }
+
+    // Breeds each generation in stripes of rows on the given pool, one stripe per pool thread (null is sequential)
+    public void setParallelStripes(ForkJoinPool pool) {
+        this.stripePool = pool;
+        int count = pool == null ? 1 : Math.max(1, Math.min(pool.getParallelism(), rows));
+        stripes = new StripeTask[count];
+        for (int s = 0; s < count; s++) {
+            stripes[s] = new StripeTask(rows * s / count, rows * (s + 1) / count);
+        }
+    }
+
+    // Measures the grid's diversity every generation, see EvolutionaryAlgorithm.setDiversityTracking
+    public void setDiversityTracking(int samplePairs) {
+        diversityTracker = samplePairs == 0 ? null : new DiversityTracker(genotypeLength, samplePairs, random.split());
+    }
+
+    // The current grid, row by row (a view, its individuals are reused as evolution continues)
+    public List<Individual> getPopulation() {
+        return Arrays.asList(grid);
+    }
+
+    @Override
+    public Individual getBestIndividual() {
+        return best;
+    }
+
+    @Override
+    public double getBestFitness() {
+        return best.getFitnessValue();
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    @Override
+    public int getGeneration() {
+        return generation;
+    }
+
+    public KnapsackInstance getInstance() {
+        return instance;
+    }
+
+    // Best fitness of the grid at the start of every generation
+    public List<Double> getFitnessHistory() {
+        return bestFitnessHistory;
+    }
+
+    public List<DiversitySample> getDiversityHistory() {
+        return diversityHistory;
+    }
+}
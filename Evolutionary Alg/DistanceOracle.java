@@ -0,0 +1,305 @@
+import java.util.Arrays;
+
+// How a DistanceOracle gets its distances
+enum DistanceStrategy {
+    MATRIX,    // all n(n-1)/2 distances precomputed in a float triangle
+    ROW_CACHE, // rows of the matrix computed on demand, least recently used rows evicted (only chosen explicitly, single-threaded)
+    DIRECT     // computed from the coordinates on every call
+}
+
+// What a distance between two cities is. The TSPLIB metrics are named and defined as in TSPLIB (rounded to
+// integers), so tour lengths compare directly with the published optimal tour lengths.
+enum DistanceMetric {
+    EUCLIDEAN, // plain Euclidean distance, rounded to float (generated cities and route files)
+    EUC_2D,    // Euclidean distance rounded to the nearest integer
+    CEIL_2D,   // Euclidean distance rounded up
+    ATT,       // pseudo-Euclidean distance of the att instances: sqrt((dx^2 + dy^2) / 10), rounded up
+    GEO        // great-circle distance in km on the idealized earth, coordinates are latitude and longitude in DDD.MM
+}
+
+// Distances between the cities of a TSP instance (Euclidean unless another DistanceMetric is given), so tours don't
+// pay for Math.sqrt on every edge of every evaluation. All strategies return exactly the same value, the distance
+// rounded to float: the strategy (which depends on the heap) never changes fitness, and farm workers computing
+// directly agree with a local matrix bit for bit. Where only the order of distances matters, compare
+// squaredDistance instead, which needs no square root.
+// Implementations are safe to share between threads (islands share their EA's oracle), but only MATRIX and DIRECT
+// scale with them: the row cache is meant for a single thread, see RowCache.
+abstract class DistanceOracle {
+    // The matrix may take up a quarter of the maximum heap, the row cache an eighth of it
+    private static final int MATRIX_HEAP_DIVISOR = 4;
+    private static final int ROW_CACHE_HEAP_DIVISOR = 8;
+    // Beyond this the matrix no longer beats computing (random lookups in it miss the CPU caches), and building it
+    // takes seconds
+    private static final int MATRIX_MAX_CITIES = 20_000;
+    // The earth of TSPLIB's GEO metric: its own value of pi and radius in km
+    private static final double GEO_PI = 3.141592;
+    private static final double GEO_RADIUS = 6378.388;
+
+    final double[] x;
+    final double[] y;
+    final DistanceMetric metric;
+    private final double[] latitude;  // GEO only: coordinates converted to radians, null otherwise
+    private final double[] longitude;
+
+    private DistanceOracle(double[] x, double[] y, DistanceMetric metric) {
+        this.x = x;
+        this.y = y;
+        this.metric = metric;
+        if (metric == DistanceMetric.GEO) {
+            latitude = new double[x.length];
+            longitude = new double[x.length];
+            for (int c = 0; c < x.length; c++) {
+                latitude[c] = geoRadians(x[c]);
+                longitude[c] = geoRadians(y[c]);
+            }
+        } else {
+            latitude = null;
+            longitude = null;
+        }
+    }
+
+    // Picks the strategy from the number of cities and the maximum heap: the matrix for up to 20k cities when its
+    // triangle fits in a quarter of the heap (about 14k cities with a 1.5 GB heap), direct computation otherwise.
+    // Lookups in a matrix of a few thousand cities take about half as long as the square root; from roughly 5k
+    // cities on they take about as long. The row cache is never picked here: tour evaluation asks for each
+    // city's row once, so every miss computes a whole row for a single distance. It pays off only for callers
+    // that look up many distances from the same few cities.
+    static DistanceOracle forCities(double[] x, double[] y) {
+        return forCities(x, y, DistanceMetric.EUCLIDEAN);
+    }
+
+    static DistanceOracle forCities(double[] x, double[] y, DistanceMetric metric) {
+        return forCities(x, y, metric, chooseStrategy(x.length, Runtime.getRuntime().maxMemory()));
+    }
+
+    static DistanceOracle forCities(double[] x, double[] y, DistanceStrategy strategy) {
+        return forCities(x, y, DistanceMetric.EUCLIDEAN, strategy);
+    }
+
+    static DistanceOracle forCities(double[] x, double[] y, DistanceMetric metric, DistanceStrategy strategy) {
+        switch (strategy) {
+            case MATRIX: return new Matrix(x, y, metric);
+            case ROW_CACHE: return new RowCache(x, y, metric, (int) Math.max(1, Math.min(x.length,
+                    Runtime.getRuntime().maxMemory() / ROW_CACHE_HEAP_DIVISOR / rowBytes(x.length))));
+            default: return new Direct(x, y, metric);
+        }
+    }
+
+    static DistanceStrategy chooseStrategy(int cities, long maxHeapBytes) {
+        long entries = (long) cities * (cities - 1) / 2;
+        if (cities <= MATRIX_MAX_CITIES && entries * Float.BYTES <= maxHeapBytes / MATRIX_HEAP_DIVISOR) {
+            return DistanceStrategy.MATRIX;
+        }
+        return DistanceStrategy.DIRECT;
+    }
+
+    private static long rowBytes(int cities) {
+        return (long) cities * Float.BYTES + 16;
+    }
+
+    abstract DistanceStrategy strategy();
+
+    // Distance between cities a and b, rounded to float
+    abstract double distance(int a, int b);
+
+    // Squared Euclidean distance, for comparisons that only need the order (monotone in distance, no square root).
+    // For the TSPLIB metrics it is monotone too, except for ties from rounding, and GEO, where it only approximates
+    // the order of great-circle distances (good enough for neighbour lists).
+    final double squaredDistance(int a, int b) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        return dx * dx + dy * dy;
+    }
+
+    final int cities() {
+        return x.length;
+    }
+
+    // The one place a distance is computed, every strategy stores or returns exactly this
+    final float computeDistance(int a, int b) {
+        if (metric == DistanceMetric.EUCLIDEAN) {
+            return (float) Math.sqrt(squaredDistance(a, b));
+        }
+        return (float) tsplibDistance(a, b);
+    }
+
+    // The TSPLIB metrics, integers (exact in a float) computed as in TSPLIB's definitions
+    private int tsplibDistance(int a, int b) {
+        switch (metric) {
+            case EUC_2D:
+                return (int) (Math.sqrt(squaredDistance(a, b)) + 0.5);
+            case CEIL_2D:
+                return (int) Math.ceil(Math.sqrt(squaredDistance(a, b)));
+            case ATT: {
+                double r = Math.sqrt(squaredDistance(a, b) / 10.0);
+                int t = (int) (r + 0.5);
+                return t < r ? t + 1 : t;
+            }
+            default: {
+                if (a == b) {
+                    return 0;
+                }
+                double q1 = Math.cos(longitude[a] - longitude[b]);
+                double q2 = Math.cos(latitude[a] - latitude[b]);
+                double q3 = Math.cos(latitude[a] + latitude[b]);
+                return (int) (GEO_RADIUS * Math.acos(0.5 * ((1.0 + q1) * q2 - (1.0 - q1) * q3)) + 1.0);
+            }
+        }
+    }
+
+    // DDD.MM (degrees, then minutes as the fraction) to radians; the degrees are truncated like the reference
+    // implementations do, which is what the published optimal tour lengths were computed with
+    private static double geoRadians(double coordinate) {
+        int degrees = (int) coordinate;
+        double minutes = coordinate - degrees;
+        return GEO_PI * (degrees + 5.0 * minutes / 3.0) / 180.0;
+    }
+
+    // Distances from city a to all cities, into row
+    final void computeRow(int a, float[] row) {
+        for (int b = 0; b < row.length; b++) {
+            row[b] = computeDistance(a, b);
+        }
+    }
+
+    // Lower triangle row by row: distance(a, b) with a > b is at a(a-1)/2 + b
+    private static class Matrix extends DistanceOracle {
+        private final float[] triangle;
+
+        Matrix(double[] x, double[] y, DistanceMetric metric) {
+            super(x, y, metric);
+            int n = x.length;
+            long entries = (long) n * (n - 1) / 2;
+            if (entries > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Too many cities for a distance matrix: " + n);
+            }
+            triangle = new float[(int) entries];
+            int index = 0;
+            for (int a = 1; a < n; a++) {
+                for (int b = 0; b < a; b++) {
+                    triangle[index++] = computeDistance(a, b);
+                }
+            }
+        }
+
+        @Override
+        DistanceStrategy strategy() {
+            return DistanceStrategy.MATRIX;
+        }
+
+        @Override
+        double distance(int a, int b) {
+            if (a < b) {
+                int swap = a;
+                a = b;
+                b = swap;
+            } else if (a == b) {
+                return 0;
+            }
+            return triangle[(int) ((long) a * (a - 1) >>> 1) + b];
+        }
+    }
+
+    // Full rows for the cities asked about most recently, in a fixed number of slots. A lookup hits when the row of
+    // either city is cached (distances are symmetric); a miss computes the row of a into the least recently used
+    // slot. The LRU order is a doubly linked list over slot indices, so lookups neither box nor allocate.
+    // Single-threaded only: distance() is synchronized so that a second thread stays correct, not so that it scales.
+    // Islands (and the GUI's repaint) sharing the oracle of an EA would take turns on every lookup, so don't give a
+    // row cache to an EA that runs islands; one cache per island would cost each of them the memory of the first.
+    private static class RowCache extends DistanceOracle {
+        private final float[][] rows;
+        private final int[] cityOfSlot;
+        private final int[] slotOfCity; // -1 when not cached
+        private final int[] newer;       // LRU list: towards the most recently used slot
+        private final int[] older;       // towards the least recently used slot
+        private int newest;
+        private int oldest;
+
+        RowCache(double[] x, double[] y, DistanceMetric metric, int capacity) {
+            super(x, y, metric);
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Row cache needs room for at least one row: " + capacity);
+            }
+            rows = new float[capacity][];
+            cityOfSlot = new int[capacity];
+            Arrays.fill(cityOfSlot, -1);
+            slotOfCity = new int[x.length];
+            Arrays.fill(slotOfCity, -1);
+            newer = new int[capacity];
+            older = new int[capacity];
+            for (int slot = 0; slot < capacity; slot++) {
+                newer[slot] = slot - 1;
+                older[slot] = slot + 1 < capacity ? slot + 1 : -1;
+            }
+            newest = 0;
+            oldest = capacity - 1;
+        }
+
+        @Override
+        DistanceStrategy strategy() {
+            return DistanceStrategy.ROW_CACHE;
+        }
+
+        @Override
+        synchronized double distance(int a, int b) {
+            int slot = slotOfCity[a];
+            if (slot < 0) {
+                slot = slotOfCity[b];
+                if (slot >= 0) {
+                    int swap = a;
+                    a = b;
+                    b = swap;
+                }
+            }
+            if (slot < 0) {
+                slot = oldest;
+                if (cityOfSlot[slot] >= 0) {
+                    slotOfCity[cityOfSlot[slot]] = -1;
+                }
+                if (rows[slot] == null) {
+                    rows[slot] = new float[x.length];
+                }
+                computeRow(a, rows[slot]);
+                cityOfSlot[slot] = a;
+                slotOfCity[a] = slot;
+            }
+            touch(slot);
+            return rows[slot][b];
+        }
+
+        // Moves slot to the most recently used end of the list
+        private void touch(int slot) {
+            if (slot == newest) {
+                return;
+            }
+            int towardsNewest = newer[slot]; // exists, slot isn't the newest
+            int towardsOldest = older[slot];
+            older[towardsNewest] = towardsOldest;
+            if (towardsOldest >= 0) {
+                newer[towardsOldest] = towardsNewest;
+            } else {
+                oldest = towardsNewest;
+            }
+            older[slot] = newest;
+            newer[slot] = -1;
+            newer[newest] = slot;
+            newest = slot;
+        }
+    }
+
+    private static class Direct extends DistanceOracle {
+        Direct(double[] x, double[] y, DistanceMetric metric) {
+            super(x, y, metric);
+        }
+
+        @Override
+        DistanceStrategy strategy() {
+            return DistanceStrategy.DIRECT;
+        }
+
+        @Override
+        double distance(int a, int b) {
+            return computeDistance(a, b);
+        }
+    }
+}
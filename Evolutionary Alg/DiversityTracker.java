@@ -0,0 +1,147 @@
+import java.util.Arrays;
+
+// Population diversity of the knapsack EA, measured once per generation on the packed genotypes
+// Comparing every pair of individuals would cost O(populationSize^2 * n), so the distance and the fixed loci are
+// estimated from a random sample of pairs, 64 loci per instruction: XOR and popcount for the Hamming distance,
+// running AND/OR of the sampled words for the loci they all agree on. Only the unique-genotype count looks at the
+// whole population, one 64-bit hash per individual. Exact per-locus allele frequencies take a pass over every
+// selected item of the population, so they are computed on request rather than every generation.
+class DiversityTracker {
+    private final int genotypeLength;
+    private final int samplePairs;
+    private final ReseedableRandom random; // own stream, so sampling doesn't shift the EA's operators
+    private final long[] allSet;           // loci selected in every sampled genotype
+    private final long[] anySet;           // loci selected in at least one sampled genotype
+    private long[] hashes = new long[0];
+
+    DiversityTracker(int genotypeLength, int samplePairs, ReseedableRandom random) {
+        if (samplePairs < 1) {
+            throw new IllegalArgumentException("Diversity sample must have at least one pair: " + samplePairs);
+        }
+        this.genotypeLength = genotypeLength;
+        this.samplePairs = samplePairs;
+        this.random = random;
+        this.allSet = new long[Individual.wordCount(genotypeLength)];
+        this.anySet = new long[allSet.length];
+    }
+
+    // Restarts the sampling stream, at the start of every generation like the EA's own streams
+    void reseed(long seed) {
+        random.reseed(seed);
+    }
+
+    int getSamplePairs() {
+        return samplePairs;
+    }
+
+    // Measures population[0, size) and returns the summary for the given generation
+    DiversitySample measure(int generation, Individual[] population, int size) {
+        Arrays.fill(allSet, -1L);
+        Arrays.fill(anySet, 0);
+        long distance = 0;
+        int pairs = size < 2 ? 0 : samplePairs;
+        for (int p = 0; p < pairs; p++) {
+            // Two different individuals, sampled with replacement across pairs
+            int a = random.nextInt(size);
+            int b = random.nextInt(size - 1);
+            if (b >= a) {
+                b++;
+            }
+            long[] bitsA = population[a].getBits();
+            long[] bitsB = population[b].getBits();
+            for (int w = 0; w < bitsA.length; w++) {
+                long wordA = bitsA[w];
+                long wordB = bitsB[w];
+                distance += Long.bitCount(wordA ^ wordB);
+                allSet[w] &= wordA & wordB;
+                anySet[w] |= wordA | wordB;
+            }
+        }
+
+        // A locus is fixed if all samples select it or none does; the unused bits of the last word are never set
+        int fixedLoci = 0;
+        int last = allSet.length - 1;
+        for (int w = 0; w < last; w++) {
+            fixedLoci += Long.bitCount(allSet[w] | ~anySet[w]);
+        }
+        if (last >= 0) {
+            fixedLoci += Long.bitCount((allSet[last] | ~anySet[last]) & (-1L >>> -genotypeLength));
+        }
+        double meanDistance = pairs == 0 ? 0 : (double) distance / pairs;
+        return new DiversitySample(generation, meanDistance, meanDistance / genotypeLength, uniqueGenotypes(population, size), fixedLoci);
+    }
+
+    // Exact frequency of the 1 allele per locus over population[0, size), visiting only the set bits
+    static float[] alleleFrequencies(Individual[] population, int size, int genotypeLength) {
+        int[] counts = new int[genotypeLength];
+        for (int i = 0; i < size; i++) {
+            long[] bits = population[i].getBits();
+            for (int w = 0; w < bits.length; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    counts[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+                }
+            }
+        }
+        float[] frequencies = new float[genotypeLength];
+        for (int locus = 0; locus < genotypeLength; locus++) {
+            frequencies[locus] = size == 0 ? 0 : (float) counts[locus] / size;
+        }
+        return frequencies;
+    }
+
+    // Distinct genotypes by 64-bit hash (two different genotypes would have to collide to be counted as one)
+    private int uniqueGenotypes(Individual[] population, int size) {
+        if (hashes.length < size) {
+            hashes = new long[size];
+        }
+        for (int i = 0; i < size; i++) {
+            hashes[i] = hash(population[i].getBits());
+        }
+        Arrays.sort(hashes, 0, size);
+        int unique = size == 0 ? 0 : 1;
+        for (int i = 1; i < size; i++) {
+            if (hashes[i] != hashes[i - 1]) {
+                unique++;
+            }
+        }
+        return unique;
+    }
+
+    // Every word is multiplied by its own odd constant and the products are summed, so unlike a chained hash such as
+    // FitnessCache.hashBits the words don't wait for each other and the multiplies overlap; one final mix spreads
+    // the sum. A single flipped bit always changes the sum, as an odd multiple of a power of two is never 0 mod 2^64.
+    private static long hash(long[] bits) {
+        long sum = 0;
+        long multiplier = 0x9E3779B97F4A7C15L;
+        for (long word : bits) {
+            sum += word * multiplier;
+            multiplier += 0x3C6EF372FE94F82AL; // even step, the multiplier stays odd
+        }
+        sum = (sum ^ (sum >>> 30)) * 0xBF58476D1CE4E5B9L;
+        sum = (sum ^ (sum >>> 27)) * 0x94D049BB133111EBL;
+        return sum ^ (sum >>> 31);
+    }
+}
+
+// Diversity of one generation's population, see DiversityTracker
+class DiversitySample {
+    final int generation;
+    final double meanHammingDistance; // estimated mean number of loci in which two individuals differ
+    final double normalizedDistance;  // the same as a fraction of the genotype length, about 0.5 for a random population
+    final int uniqueGenotypes;        // distinct 64-bit genotype hashes over the whole population
+    final int fixedLoci;              // estimated, loci on which every sampled individual agrees
+
+    DiversitySample(int generation, double meanHammingDistance, double normalizedDistance, int uniqueGenotypes, int fixedLoci) {
+        this.generation = generation;
+        this.meanHammingDistance = meanHammingDistance;
+        this.normalizedDistance = normalizedDistance;
+        this.uniqueGenotypes = uniqueGenotypes;
+        this.fixedLoci = fixedLoci;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("generation %d: mean distance %.1f (%.4f), %d unique genotypes, %d fixed loci",
+                generation, meanHammingDistance, normalizedDistance, uniqueGenotypes, fixedLoci);
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Microbenchmarks for the evolutionary operators and one full generation, for the knapsack EA (Main.java) and the
+// TSP EA (Main_salesman_GUI.java or Main_salesman.java, whichever is compiled in, see TSPVariant).
+//
+//   javac Main.java Main_salesman_GUI.java Evolver.java Island.java IslandModel.java RunHandle.java MutationEngine.java \
+//         KnapsackInstance.java PopulationCheckpoint.java FitnessCache.java TopK.java IndexedMinHeap.java \
+//         FitnessEvaluator.java DiversityTracker.java EvaluationFarm.java TourCrossover.java TourMutation.java \
+//         DistanceOracle.java TourLocalSearch.java ByteScanner.java TSPInstance.java EABenchmark.java
+//   java EABenchmark [--lengths=1000,100000] [--cities=100,1000] [--populations=100,1000] [--seed=42]
+//                    [--warmup=5] [--iterations=10] [--millis=500]
+//
+// Every benchmark state is built from the fixed seed, so two runs (or two commits) measure exactly the same
+// inputs. Each benchmark first runs warm-up iterations so the JIT has compiled the operator, then reports the mean
+// time per operation over the measured iterations with its standard deviation. Results of every operation are
+// folded into a sink so the JIT can't drop the work, and all console output of the EAs themselves is suppressed.
+public class EABenchmark {
+    private int[] genotypeLengths = {1_000, 100_000};
+    private int[] cityCounts = {100, 1_000};
+    private int[] populationSizes = {100, 1_000};
+    private long seed = 42;
+    private int warmupIterations = 5;
+    private int measurementIterations = 10;
+    private long iterationMillis = 500;
+
+    private long sink; // consumes operation results, printed at the end so it can't be optimized away
+
+    public static void main(String[] args) {
+        EABenchmark benchmark = new EABenchmark();
+        for (String arg : args) {
+            benchmark.parseOption(arg);
+        }
+        benchmark.runAll();
+    }
+
+    private void parseOption(String arg) {
+        String[] parts = arg.split("=", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected --name=value, got " + arg);
+        }
+        switch (parts[0]) {
+            case "--lengths": genotypeLengths = parseInts(parts[1]); break;
+            case "--cities": cityCounts = parseInts(parts[1]); break;
+            case "--populations": populationSizes = parseInts(parts[1]); break;
+            case "--seed": seed = Long.parseLong(parts[1]); break;
+            case "--warmup": warmupIterations = Integer.parseInt(parts[1]); break;
+            case "--iterations": measurementIterations = Integer.parseInt(parts[1]); break;
+            case "--millis": iterationMillis = Long.parseLong(parts[1]); break;
+            default: throw new IllegalArgumentException("Unknown option " + parts[0]);
+        }
+    }
+
+    private static int[] parseInts(String list) {
+        String[] items = list.split(",");
+        int[] result = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            result[i] = Integer.parseInt(items[i].trim());
+        }
+        return result;
+    }
+
+    private void runAll() {
+        System.out.printf("%-32s %-28s %16s %12s%n", "Benchmark", "Params", "ns/op", "+-");
+        for (int length : genotypeLengths) {
+            for (int populationSize : populationSizes) {
+                knapsackBenchmarks(length, populationSize);
+            }
+        }
+        for (int cities : cityCounts) {
+            for (int populationSize : populationSizes) {
+                tspBenchmarks(cities, populationSize);
+            }
+        }
+        System.out.println("(sink " + sink + ")");
+    }
+
+    // ---------- Knapsack ----------
+
+    private void knapsackBenchmarks(int length, int populationSize) {
+        String params = "length=" + length + " pop=" + populationSize;
+        KnapsackInstance instance = KnapsackInstance.random(length, seed);
+        EvolutionaryAlgorithm ea = new EvolutionaryAlgorithm(populationSize, instance, 0.8, 1.0 / length, 1, seed);
+        ea.evaluateFitness();
+        List<Individual> population = ea.getPopulation();
+
+        // Stand-alone mutation on the same items
+        ReseedableRandom random = new ReseedableRandom(seed);
+        int[] values = instance.values();
+        int[] weights = instance.weights();
+        Individual individual = new Individual(length, random);
+        MutationEngine engine = new MutationEngine(1.0 / length, random.split());
+        measure("Individual.mutate", params, () -> {
+            individual.mutate(engine, values, weights);
+            return individual.getTotalWeight();
+        });
+
+        Individual child1 = population.get(0).copy();
+        Individual child2 = population.get(1).copy();
+        for (CrossoverType type : CrossoverType.values()) {
+            ea.setCrossoverType(type);
+            measure("EA.crossover " + type, params, () -> {
+                ea.crossover(population.get(0), population.get(1), child1, child2);
+                return child1.getTotalValue();
+            });
+        }
+        ea.setCrossoverType(CrossoverType.SINGLE_POINT);
+
+        measure("EA.selectBreeder", params, ea::selectBreeder);
+
+        // Incremental: only the fitness is cleared, evaluation reuses the running totals
+        measure("EA.evaluateFitness incremental", params, () -> {
+            for (Individual ind : population) {
+                ind.clearFitness();
+            }
+            ea.evaluateFitness();
+            return population.size();
+        });
+        // Full: the totals are cleared too, so every genotype is summed from scratch
+        measure("EA.evaluateFitness full", params, () -> {
+            for (Individual ind : population) {
+                ind.clearFitness();
+                ind.clearTotals();
+            }
+            ea.evaluateFitness();
+            return population.size();
+        });
+
+        EvolutionaryAlgorithm generationEA = new EvolutionaryAlgorithm(populationSize, instance, 0.8, 1.0 / length, 1, seed);
+        measure("EA.step (one generation)", params, () -> {
+            generationEA.step();
+            return generationEA.getFitnessHistory().size();
+        });
+
+        EvolutionaryAlgorithm steadyStateEA = new EvolutionaryAlgorithm(populationSize, instance, 0.8, 1.0 / length, 1, seed);
+        measure("EA.steadyStateStep", params, () -> {
+            steadyStateEA.steadyStateStep();
+            return steadyStateEA.getEvaluations();
+        });
+    }
+
+    // ---------- TSP ----------
+
+    // The operators run on the shared tour classes (what both TSP EAs call), the generation on whichever TSP EA is
+    // compiled in, created through TSPVariant
+    private void tspBenchmarks(int cities, int populationSize) {
+        String params = "cities=" + cities + " pop=" + populationSize;
+        ReseedableRandom random = new ReseedableRandom(seed);
+        double[] x = new double[cities];
+        double[] y = new double[cities];
+        for (int i = 0; i < cities; i++) {
+            x[i] = random.nextDouble();
+            y[i] = random.nextDouble();
+        }
+        DistanceOracle distances = DistanceOracle.forCities(x, y);
+        TSPIndividual parent1 = new TSPIndividual(cities, random);
+        TSPIndividual parent2 = new TSPIndividual(cities, random);
+
+        TourCrossover crossover = new TourCrossover(cities);
+        TSPIndividual child1 = parent1.copy();
+        TSPIndividual child2 = parent2.copy();
+        ReseedableRandom cuts = random.split();
+        measure("TSP.crossover (OX)", params, () -> {
+            int cut1 = cuts.nextInt(cities);
+            int cut2 = cuts.nextInt(cities);
+            crossover.order(parent1.getTour(), parent2.getTour(), child1.getTour(), child2.getTour(),
+                    Math.min(cut1, cut2), Math.max(cut1, cut2), null, null);
+            return child1.getTour()[0];
+        });
+
+        measure("TSP.computeDistance", params, () -> Double.doubleToRawLongBits(TSPInstance.tourLength(parent1.getTour(), distances)));
+
+        MutationEngine engine = new MutationEngine(1.0, seed);
+        measure("TSP.mutate (swap with length delta)", params, () ->
+                Double.doubleToRawLongBits(TourMutation.apply(TourMutationType.SWAP, child1.getTour(), engine, distances, null)));
+
+        Island<TSPIndividual> generationEA = quietly(() -> TSPVariant.create(populationSize, cities, 0.8, 0.15, 1, seed));
+        measure("TSP.step (one generation)", params, () -> {
+            generationEA.step();
+            return 1;
+        });
+    }
+
+    // ---------- Harness ----------
+
+    private void measure(String name, String params, LongSupplier operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(operation);
+        }
+        double[] nanosPerOp = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            nanosPerOp[i] = runIteration(operation);
+        }
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value;
+        }
+        mean /= nanosPerOp.length;
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double stddev = nanosPerOp.length > 1 ? Math.sqrt(variance / (nanosPerOp.length - 1)) : 0;
+        System.out.printf("%-32s %-28s %16.1f %12.1f%n", name, params, mean, stddev);
+    }
+
+    // Runs the operation back to back for one iteration window and returns the average nanoseconds per call
+    private double runIteration(LongSupplier operation) {
+        long budget = iterationMillis * 1_000_000L;
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += operation.getAsLong();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budget);
+        return (double) elapsed / operations;
+    }
+
+    // Builds a benchmark state with System.out silenced, the TSP EA constructor prints its cities
+    private static <T> T quietly(Supplier<T> factory) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return factory.get();
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
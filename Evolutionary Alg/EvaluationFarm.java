@@ -0,0 +1,472 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+// Wire format shared by EvaluationFarm (the master) and EvaluationWorker
+// Every message is a frame: int length (of everything after it), byte type, payload; all numbers big-endian.
+//   PROBLEM   master -> worker, once per connection: int kind, int heartbeat interval in ms, int length, description
+//   BATCH     master -> worker: long batch id, int count, count encoded genotypes of the problem's fixed size
+//   RESULT    worker -> master: long batch id, int count, count doubles (fitness in batch order)
+//   HEARTBEAT worker -> master, every heartbeat interval while connected, no payload
+final class FarmProtocol {
+    static final byte PROBLEM = 1;
+    static final byte BATCH = 2;
+    static final byte RESULT = 3;
+    static final byte HEARTBEAT = 4;
+    static final int MAX_FRAME = 1 << 30;
+
+    private FarmProtocol() {
+    }
+
+    // Buffer for one frame with the header already written, ready for the payload
+    static ByteBuffer frame(byte type, int payloadSize) {
+        if (payloadSize > MAX_FRAME - 1) {
+            throw new IllegalArgumentException("Frame of " + payloadSize + " bytes is too large");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(5 + payloadSize);
+        frame.putInt(1 + payloadSize);
+        frame.put(type);
+        return frame;
+    }
+}
+
+// What an EvaluationFarm needs to know about a problem: a description the workers rebuild the fitness function
+// from, and how to encode one genotype into a fixed number of bytes. The EAs create these, see farmProblem().
+class FarmProblem<T> {
+    static final int KNAPSACK = 1; // description: int n, long capacity, int[n] values, int[n] weights
+    static final int TSP = 2;      // description: int n, int metric (DistanceMetric ordinal), double[n] x, double[n] y
+
+    final int kind;
+    final byte[] description;
+    final int genotypeBytes;
+    final BiConsumer<T, ByteBuffer> encoder;
+
+    FarmProblem(int kind, byte[] description, int genotypeBytes, BiConsumer<T, ByteBuffer> encoder) {
+        this.kind = kind;
+        this.description = description;
+        this.genotypeBytes = genotypeBytes;
+        this.encoder = encoder;
+    }
+
+    // Bytes per city index in an encoded tour: unsigned shorts while they fit, ints beyond 65536 cities
+    static int cityBytes(int cities) {
+        return cities <= 65536 ? 2 : 4;
+    }
+}
+
+// Master of a multi-JVM evaluation farm: a FitnessEvaluator that ships batches to EvaluationWorker processes
+// over TCP and completes each batch's future when its fitness values come back, e.g.
+//
+//   try (EvaluationFarm<Individual> farm = new EvaluationFarm<>(5000, ea.farmProblem())) {
+//       EvaluationFarm.launchLocalWorkers(4, farm.getPort());   // or start workers by hand on other hosts
+//       farm.awaitWorkers(4, Duration.ofSeconds(10));
+//       ea.setFitnessEvaluator(farm, 50, 8);
+//       ea.loop();
+//   }
+//
+// Workers connect to the master. One I/O thread serves every connection with a selector: it hands queued batches
+// to the workers with the fewest outstanding ones (at most two each, so a worker always has the next batch
+// ready), reads results and heartbeats, and drops workers whose connection breaks or whose heartbeats stop. The
+// batches of a dropped worker go back to the front of the queue for the others, so a dead worker costs a retry
+// rather than a stalled generation; a batch that has failed on maxAttempts workers fails its future instead.
+// Batches wait in the queue while no worker is connected. Futures are completed on the I/O thread.
+class EvaluationFarm<T> implements FitnessEvaluator<T>, AutoCloseable {
+    private final FarmProblem<T> problem;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread ioThread;
+    private final int heartbeatIntervalMillis;
+    private final long heartbeatTimeoutNanos;
+    private final int maxAttempts;
+    private final int maxBatchesPerWorker = 2;
+
+    private final AtomicLong nextBatchId = new AtomicLong();
+    private final ConcurrentLinkedQueue<PendingBatch> submitted = new ConcurrentLinkedQueue<>();
+    // Everything below is only touched by the I/O thread, apart from the volatile counters
+    private final ArrayDeque<PendingBatch> ready = new ArrayDeque<>();
+    private final List<WorkerConnection> workers = new ArrayList<>();
+    private final Object workerCountLock = new Object();
+    private volatile int liveWorkers;
+    private volatile long retries;
+    private volatile long workersLost;
+    private volatile boolean closed;
+
+    // Heartbeats every second, a worker that stays silent for 5 seconds is dropped, a batch is tried on 3 workers
+    EvaluationFarm(int port, FarmProblem<T> problem) throws IOException {
+        this(port, problem, 1000, 5000, 3);
+    }
+
+    // port 0 picks a free port, see getPort()
+    EvaluationFarm(int port, FarmProblem<T> problem, int heartbeatIntervalMillis, int heartbeatTimeoutMillis, int maxAttempts) throws IOException {
+        if (heartbeatIntervalMillis <= 0 || heartbeatTimeoutMillis <= heartbeatIntervalMillis || maxAttempts < 1) {
+            throw new IllegalArgumentException("Need 0 < heartbeat interval < heartbeat timeout and at least one attempt");
+        }
+        this.problem = problem;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.heartbeatTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatTimeoutMillis);
+        this.maxAttempts = maxAttempts;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.ioThread = new Thread(this::serve, "evaluation-farm");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getWorkerCount() {
+        return liveWorkers;
+    }
+
+    // Batches sent again after their worker was dropped
+    public long getRetries() {
+        return retries;
+    }
+
+    public long getWorkersLost() {
+        return workersLost;
+    }
+
+    // Waits until at least count workers are connected, returns false if that didn't happen in time
+    public boolean awaitWorkers(int count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (workerCountLock) {
+            while (liveWorkers < count) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(workerCountLock, remaining);
+            }
+        }
+        return true;
+    }
+
+    // Starts count EvaluationWorker processes on this machine with the current JVM and class path, connecting to
+    // localhost:port. The caller owns the processes (they also exit by themselves once the farm is closed).
+    static List<Process> launchLocalWorkers(int count, int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "EvaluationWorker",
+                    "--master=localhost:" + port).inheritIO().start());
+        }
+        return processes;
+    }
+
+    // Encodes the batch right away (the caller keeps its individuals untouched until the future completes anyway)
+    // and queues it for the next free worker
+    @Override
+    public CompletableFuture<double[]> evaluate(List<T> batch) {
+        CompletableFuture<double[]> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("Evaluation farm is closed"));
+            return future;
+        }
+        long id = nextBatchId.incrementAndGet();
+        ByteBuffer frame = FarmProtocol.frame(FarmProtocol.BATCH, 12 + batch.size() * problem.genotypeBytes);
+        frame.putLong(id);
+        frame.putInt(batch.size());
+        for (T individual : batch) {
+            int start = frame.position();
+            problem.encoder.accept(individual, frame);
+            if (frame.position() - start != problem.genotypeBytes) {
+                throw new IllegalStateException("Encoded genotype has " + (frame.position() - start) + " bytes, expected " + problem.genotypeBytes);
+            }
+        }
+        frame.flip();
+        submitted.add(new PendingBatch(id, batch.size(), frame, future));
+        selector.wakeup();
+        return future;
+    }
+
+    // Stops serving, disconnects the workers and fails every batch that hasn't come back
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            ioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- I/O thread ----------
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select(heartbeatIntervalMillis);
+                for (PendingBatch batch; (batch = submitted.poll()) != null; ) {
+                    ready.add(batch);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    WorkerConnection worker = (WorkerConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            worker.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            worker.flush();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        drop(worker);
+                    }
+                }
+                dropSilentWorkers();
+                dispatch();
+            }
+        } catch (IOException | RuntimeException e) {
+            closed = true;
+        } finally {
+            shutDown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        WorkerConnection worker = new WorkerConnection(channel);
+        worker.key = channel.register(selector, SelectionKey.OP_READ, worker);
+        ByteBuffer hello = FarmProtocol.frame(FarmProtocol.PROBLEM, 12 + problem.description.length);
+        hello.putInt(problem.kind);
+        hello.putInt(heartbeatIntervalMillis);
+        hello.putInt(problem.description.length);
+        hello.put(problem.description);
+        hello.flip();
+        worker.send(hello);
+        workers.add(worker);
+        setLiveWorkers(workers.size());
+    }
+
+    // Hands queued batches to the least busy workers
+    private void dispatch() {
+        while (!ready.isEmpty()) {
+            WorkerConnection idlest = null;
+            for (WorkerConnection worker : workers) {
+                if (worker.assigned.size() < maxBatchesPerWorker && (idlest == null || worker.assigned.size() < idlest.assigned.size())) {
+                    idlest = worker;
+                }
+            }
+            if (idlest == null) {
+                return;
+            }
+            PendingBatch batch = ready.poll();
+            batch.attempts++;
+            idlest.assigned.put(batch.id, batch);
+            try {
+                idlest.send(batch.frame.duplicate());
+            } catch (IOException | RuntimeException e) {
+                drop(idlest);
+            }
+        }
+    }
+
+    private void dropSilentWorkers() {
+        long now = System.nanoTime();
+        for (WorkerConnection worker : new ArrayList<>(workers)) {
+            if (now - worker.lastHeard > heartbeatTimeoutNanos) {
+                drop(worker);
+            }
+        }
+    }
+
+    // Disconnects a worker and queues its outstanding batches again, oldest first, ahead of everything else
+    private void drop(WorkerConnection worker) {
+        if (!workers.remove(worker)) {
+            return;
+        }
+        worker.key.cancel();
+        try {
+            worker.channel.close();
+        } catch (IOException ignored) {
+            // the worker is gone either way
+        }
+        workersLost++;
+        setLiveWorkers(workers.size());
+        List<PendingBatch> orphans = new ArrayList<>(worker.assigned.values());
+        for (int i = orphans.size() - 1; i >= 0; i--) {
+            PendingBatch batch = orphans.get(i);
+            if (batch.attempts >= maxAttempts) {
+                batch.future.completeExceptionally(new IllegalStateException(
+                        "Batch " + batch.id + " was lost by " + batch.attempts + " workers"));
+            } else {
+                retries++;
+                ready.addFirst(batch);
+            }
+        }
+    }
+
+    private void setLiveWorkers(int count) {
+        synchronized (workerCountLock) {
+            liveWorkers = count;
+            workerCountLock.notifyAll();
+        }
+    }
+
+    private void shutDown() {
+        closed = true;
+        IllegalStateException failure = new IllegalStateException("Evaluation farm is closed");
+        for (WorkerConnection worker : workers) {
+            for (PendingBatch batch : worker.assigned.values()) {
+                batch.future.completeExceptionally(failure);
+            }
+            try {
+                worker.channel.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+        workers.clear();
+        setLiveWorkers(0);
+        for (PendingBatch batch : ready) {
+            batch.future.completeExceptionally(failure);
+        }
+        for (PendingBatch batch; (batch = submitted.poll()) != null; ) {
+            batch.future.completeExceptionally(failure);
+        }
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException ignored) {
+            // nothing left to serve
+        }
+    }
+
+    // A batch between evaluate() and the arrival of its results; the encoded frame is kept for retries
+    private static class PendingBatch {
+        final long id;
+        final int count;
+        final ByteBuffer frame;
+        final CompletableFuture<double[]> future;
+        int attempts;
+
+        PendingBatch(long id, int count, ByteBuffer frame, CompletableFuture<double[]> future) {
+            this.id = id;
+            this.count = count;
+            this.frame = frame;
+            this.future = future;
+        }
+    }
+
+    // One connected worker: frames are read into a growing buffer and written from a queue, never blocking
+    private static class WorkerConnection {
+        final SocketChannel channel;
+        SelectionKey key;
+        final Map<Long, PendingBatch> assigned = new LinkedHashMap<>(); // in the order they were sent
+        private final ArrayDeque<ByteBuffer> outgoing = new ArrayDeque<>();
+        private ByteBuffer incoming = ByteBuffer.allocate(1 << 16);
+        long lastHeard = System.nanoTime();
+
+        WorkerConnection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void send(ByteBuffer frame) throws IOException {
+            outgoing.add(frame);
+            flush();
+        }
+
+        void flush() throws IOException {
+            while (!outgoing.isEmpty()) {
+                ByteBuffer head = outgoing.peek();
+                channel.write(head);
+                if (head.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                outgoing.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void read() throws IOException {
+            if (channel.read(incoming) < 0) {
+                throw new IOException("Worker disconnected");
+            }
+            lastHeard = System.nanoTime();
+            incoming.flip();
+            while (incoming.remaining() >= 4) {
+                int length = incoming.getInt(incoming.position());
+                if (length < 1 || length > FarmProtocol.MAX_FRAME) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (incoming.remaining() < 4 + length) {
+                    if (incoming.capacity() < 4 + length) {
+                        ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                        larger.put(incoming);
+                        incoming = larger;
+                        return;
+                    }
+                    break;
+                }
+                int end = incoming.position() + 4 + length;
+                incoming.getInt();
+                byte type = incoming.get();
+                if (type == FarmProtocol.RESULT) {
+                    receiveResult();
+                } else if (type != FarmProtocol.HEARTBEAT) {
+                    throw new IOException("Unexpected frame type " + type);
+                }
+                incoming.position(end);
+            }
+            incoming.compact();
+        }
+
+        private void receiveResult() throws IOException {
+            long id = incoming.getLong();
+            int count = incoming.getInt();
+            PendingBatch batch = assigned.remove(id);
+            if (batch == null) {
+                throw new IOException("Result for unknown batch " + id);
+            }
+            if (count != batch.count) {
+                batch.future.completeExceptionally(new IllegalStateException(
+                        "Worker returned " + count + " values for a batch of " + batch.count));
+                return;
+            }
+            double[] fitness = new double[count];
+            for (int i = 0; i < count; i++) {
+                fitness[i] = incoming.getDouble();
+            }
+            batch.future.complete(fitness);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Worker process of an evaluation farm (see EvaluationFarm): connects to the master, receives the problem, then
+// evaluates batches of encoded genotypes until the master goes away.
+//
+//   java EvaluationWorker [--master=localhost:5000] [--crash-after=N]
+//
+// --crash-after makes the worker exit abruptly instead of answering its Nth batch, to try out the master's retry
+// path locally. Heartbeats go out from their own thread, so they keep coming while a long batch is evaluated.
+public class EvaluationWorker {
+    private final SocketChannel channel;
+    private final Object writeLock = new Object();
+    private final ByteBuffer header = ByteBuffer.allocate(5);
+
+    private EvaluationWorker(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = "localhost";
+        int port = 5000;
+        long crashAfter = Long.MAX_VALUE;
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            switch (parts[0]) {
+                case "--master": {
+                    int colon = parts[1].lastIndexOf(':');
+                    host = parts[1].substring(0, colon);
+                    port = Integer.parseInt(parts[1].substring(colon + 1));
+                    break;
+                }
+                case "--crash-after": crashAfter = Long.parseLong(parts[1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + parts[0]);
+            }
+        }
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+            channel.socket().setTcpNoDelay(true);
+            new EvaluationWorker(channel).serve(crashAfter);
+        } catch (EOFException e) {
+            // the master closed the connection, that's the normal way to stop
+        }
+    }
+
+    private void serve(long crashAfter) throws IOException {
+        ByteBuffer problemFrame = readFrame(FarmProtocol.PROBLEM);
+        int kind = problemFrame.getInt();
+        int heartbeatMillis = problemFrame.getInt();
+        problemFrame.getInt(); // description length, the rest of the frame
+        GenotypeFitness fitness = GenotypeFitness.forProblem(kind, problemFrame);
+
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+        try {
+            for (long batches = 1; ; batches++) {
+                ByteBuffer batch = readFrame(FarmProtocol.BATCH);
+                if (batches >= crashAfter) {
+                    Runtime.getRuntime().halt(1);
+                }
+                long id = batch.getLong();
+                int count = batch.getInt();
+                ByteBuffer result = FarmProtocol.frame(FarmProtocol.RESULT, 12 + 8 * count);
+                result.putLong(id);
+                result.putInt(count);
+                for (int i = 0; i < count; i++) {
+                    result.putDouble(fitness.evaluate(batch));
+                }
+                result.flip();
+                write(result);
+            }
+        } finally {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    // Reads one whole frame of the expected type and returns its payload
+    private ByteBuffer readFrame(byte expectedType) throws IOException {
+        header.clear();
+        readFully(header);
+        header.flip();
+        int length = header.getInt();
+        byte type = header.get();
+        if (length < 1 || length > FarmProtocol.MAX_FRAME || type != expectedType) {
+            throw new IOException("Unexpected frame: type " + type + ", length " + length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length - 1);
+        readFully(payload);
+        payload.flip();
+        return payload;
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Master closed the connection");
+            }
+        }
+    }
+
+    private void sendHeartbeat() {
+        try {
+            ByteBuffer frame = FarmProtocol.frame(FarmProtocol.HEARTBEAT, 0);
+            frame.flip();
+            write(frame);
+        } catch (IOException e) {
+            // the main loop notices the broken connection on its next read
+        }
+    }
+
+    private void write(ByteBuffer frame) throws IOException {
+        synchronized (writeLock) {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        }
+    }
+}
+
+// Fitness of encoded genotypes on the worker side, rebuilt from a FarmProblem description
+// Each implementation must compute exactly what the EA itself computes, so farm and local runs agree bit for bit
+// (for TSP, local runs with delta evaluation turned off, see setDeltaEvaluation).
+abstract class GenotypeFitness {
+    // Reads one encoded genotype from the buffer and returns its fitness
+    abstract double evaluate(ByteBuffer genotypes);
+
+    static GenotypeFitness forProblem(int kind, ByteBuffer description) {
+        switch (kind) {
+            case FarmProblem.KNAPSACK: return new KnapsackFitness(description);
+            case FarmProblem.TSP: return new TourFitness(description);
+            default: throw new IllegalArgumentException("Unknown problem kind " + kind);
+        }
+    }
+
+    // Packed bit words, fitness as in EvolutionaryAlgorithm.knapsackFitness
+    private static class KnapsackFitness extends GenotypeFitness {
+        private final int[] values;
+        private final int[] weights;
+        private final long capacity;
+        private final int words;
+
+        KnapsackFitness(ByteBuffer description) {
+            int n = description.getInt();
+            capacity = description.getLong();
+            values = new int[n];
+            weights = new int[n];
+            description.asIntBuffer().get(values);
+            description.position(description.position() + 4 * n);
+            description.asIntBuffer().get(weights);
+            words = (n + 63) >>> 6;
+        }
+
+        @Override
+        double evaluate(ByteBuffer genotypes) {
+            long totalValue = 0;
+            long totalWeight = 0;
+            for (int w = 0; w < words; w++) {
+                for (long word = genotypes.getLong(); word != 0; word &= word - 1) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    totalValue += values[i];
+                    totalWeight += weights[i];
+                }
+            }
+            return EvolutionaryAlgorithm.knapsackFitness(totalValue, totalWeight, capacity);
+        }
+    }
+
+    // City indices as unsigned shorts (up to 65536 cities) or ints, fitness 1 / closed tour length summed in tour
+    // order like TSPEvolutionaryAlgorithm.computeDistance. The worker picks its DistanceOracle strategy for its own
+    // heap; all strategies give the same distances, so this still matches the master exactly.
+    private static class TourFitness extends GenotypeFitness {
+        private final DistanceOracle distances;
+        private final int[] tour;
+        private final boolean shortIndices;
+
+        TourFitness(ByteBuffer description) {
+            int n = description.getInt();
+            DistanceMetric metric = DistanceMetric.values()[description.getInt()];
+            double[] x = new double[n];
+            double[] y = new double[n];
+            description.asDoubleBuffer().get(x);
+            description.position(description.position() + 8 * n);
+            description.asDoubleBuffer().get(y);
+            distances = DistanceOracle.forCities(x, y, metric);
+            tour = new int[n];
+            shortIndices = FarmProblem.cityBytes(n) == 2;
+        }
+
+        @Override
+        double evaluate(ByteBuffer genotypes) {
+            int n = tour.length;
+            for (int i = 0; i < n; i++) {
+                tour[i] = shortIndices ? genotypes.getShort() & 0xFFFF : genotypes.getInt();
+            }
+            double totalDist = 0.0;
+            for (int i = 0; i < n - 1; i++) {
+                totalDist += distances.distance(tour[i], tour[i + 1]);
+            }
+            totalDist += distances.distance(tour[n - 1], tour[0]);
+            return 1.0 / totalDist;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+// Anything that evolves a population one generation at a time: the knapsack EA and the TSP EAs
+// RunHandle drives an Evolver on a background thread, IslandModel drives several of them as islands.
+// Implementations are not thread-safe, only one thread may call these methods at a time.
+interface Evolver<T> {
+    // Runs a single generation: evaluate, select and breed the next population
+    void step();
+
+    // Best individual (and its fitness) found so far
+    T getBestIndividual();
+    double getBestFitness();
+
+    // Number of completed generations
+    int getGeneration();
+
+    // Number of fitness evaluations so far
+    long getEvaluations();
+}
@@ -0,0 +1,228 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded memo of fitness values keyed by a 64-bit hash of the genotype, so duplicate offspring (very common once
+// the EA has converged) are not evaluated again. Only worth it when the fitness function costs noticeably more
+// than hashing the genotype, e.g. simulation-based fitness or long TSP tours.
+//
+// The table is set-associative: a hash picks one set of WAYS slots and eviction within a set follows the CLOCK
+// (second chance) policy, so memory stays fixed at the configured capacity. Each set has its own lock, which keeps
+// contention low when the population is evaluated in parallel or the cache is shared between islands.
+// With verification enabled, a copy of every cached genotype is kept and compared on each hit, so a 64-bit hash
+// collision can never return a wrong fitness (it is counted and treated as a miss instead).
+class FitnessCache {
+    private static final int WAYS = 8;
+
+    private final int setMask;
+    private final long[] keys;
+    private final double[] fitness;
+    private final byte[] state;       // EMPTY, or USED with or without the CLOCK reference bit
+    private final Object[] genotypes; // canonical genotype copies, only kept when verifying
+    private final int[] hands;        // CLOCK hand per set
+    private final Object[] locks;
+    private final boolean verify;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte REFERENCED = 2;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // capacity is rounded up to a power-of-two number of sets
+    public FitnessCache(int capacity, boolean verify) {
+        int sets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS - 1)) << 1;
+        this.setMask = sets - 1;
+        this.keys = new long[sets * WAYS];
+        this.fitness = new double[sets * WAYS];
+        this.state = new byte[sets * WAYS];
+        this.genotypes = verify ? new Object[sets * WAYS] : null;
+        this.hands = new int[sets];
+        this.locks = new Object[sets];
+        for (int i = 0; i < sets; i++) {
+            locks[i] = new Object();
+        }
+        this.verify = verify;
+    }
+
+    public boolean isVerifying() {
+        return verify;
+    }
+
+    // Cached fitness for the genotype with this hash, or NaN on a miss
+    // genotype is the canonical form (long[] or int[]) and is only looked at when verifying
+    public double get(long hash, Object genotype) {
+        int set = set(hash);
+        synchronized (locks[set]) {
+            int base = set * WAYS;
+            for (int slot = base; slot < base + WAYS; slot++) {
+                if (state[slot] != EMPTY && keys[slot] == hash) {
+                    if (verify && !sameGenotype(genotypes[slot], genotype)) {
+                        collisions.increment();
+                        break;
+                    }
+                    state[slot] = REFERENCED;
+                    hits.increment();
+                    return fitness[slot];
+                }
+            }
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    public void put(long hash, Object genotype, double value) {
+        int set = set(hash);
+        synchronized (locks[set]) {
+            int base = set * WAYS;
+            int target = -1;
+            for (int slot = base; slot < base + WAYS; slot++) {
+                if (state[slot] != EMPTY && keys[slot] == hash) {
+                    target = slot; // same hash (or a verified collision): overwrite
+                    break;
+                }
+                if (target == -1 && state[slot] == EMPTY) {
+                    target = slot;
+                }
+            }
+            if (target == -1) {
+                target = evict(set);
+            }
+            keys[target] = hash;
+            fitness[target] = value;
+            state[target] = USED;
+            if (verify) {
+                genotypes[target] = copyOf(genotype);
+            }
+        }
+    }
+
+    // CLOCK: sweep the set, clearing reference bits, until a slot without one comes up
+    private int evict(int set) {
+        int base = set * WAYS;
+        while (true) {
+            int slot = base + hands[set];
+            hands[set] = (hands[set] + 1) % WAYS;
+            if (state[slot] == REFERENCED) {
+                state[slot] = USED;
+            } else {
+                evictions.increment();
+                return slot;
+            }
+        }
+    }
+
+    private int set(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & setMask;
+    }
+
+    private static boolean sameGenotype(Object cached, Object genotype) {
+        if (cached instanceof long[] && genotype instanceof long[]) {
+            return Arrays.equals((long[]) cached, (long[]) genotype);
+        }
+        if (cached instanceof int[] && genotype instanceof int[]) {
+            return Arrays.equals((int[]) cached, (int[]) genotype);
+        }
+        return false;
+    }
+
+    private static Object copyOf(Object genotype) {
+        if (genotype instanceof long[]) {
+            return ((long[]) genotype).clone();
+        }
+        if (genotype instanceof int[]) {
+            return ((int[]) genotype).clone();
+        }
+        throw new IllegalArgumentException("Unsupported genotype type " + genotype);
+    }
+
+    // ---------- Metrics ----------
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FitnessCache[hits=%d, misses=%d, hitRate=%.1f%%, collisions=%d, evictions=%d]",
+                getHits(), getMisses(), 100 * getHitRate(), getCollisions(), getEvictions());
+    }
+
+    // ---------- Genotype hashing ----------
+
+    // 64-bit hash of a packed bitstring (knapsack genotype)
+    static long hashBits(long[] bits) {
+        long hash = 0x9E3779B97F4A7C15L;
+        for (long word : bits) {
+            hash = mix(hash ^ word);
+        }
+        return hash;
+    }
+
+    // 64-bit hash of a tour in canonical form: rotated to start at city 0 and walked in the direction whose first
+    // step goes to the smaller neighbour, so all 2n rotations/reflections of the same cycle hash alike
+    static long hashTour(int[] tour) {
+        int n = tour.length;
+        int start = indexOfCityZero(tour);
+        int direction = canonicalDirection(tour, start);
+        long hash = 0x9E3779B97F4A7C15L;
+        for (int i = 0, pos = start; i < n; i++, pos = Math.floorMod(pos + direction, n)) {
+            hash = mix(hash ^ tour[pos]);
+        }
+        return hash;
+    }
+
+    // The tour in the canonical form hashed by hashTour, for verification
+    static int[] canonicalTour(int[] tour) {
+        int n = tour.length;
+        int start = indexOfCityZero(tour);
+        int direction = canonicalDirection(tour, start);
+        int[] canonical = new int[n];
+        for (int i = 0, pos = start; i < n; i++, pos = Math.floorMod(pos + direction, n)) {
+            canonical[i] = tour[pos];
+        }
+        return canonical;
+    }
+
+    private static int indexOfCityZero(int[] tour) {
+        for (int i = 0; i < tour.length; i++) {
+            if (tour[i] == 0) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Tour does not visit city 0");
+    }
+
+    private static int canonicalDirection(int[] tour, int start) {
+        int n = tour.length;
+        int next = tour[(start + 1) % n];
+        int previous = tour[(start - 1 + n) % n];
+        return next <= previous ? 1 : -1;
+    }
+
+    // Finalizer of SplitMix64, spreads every input bit over the whole hash
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
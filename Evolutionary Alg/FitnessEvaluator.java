@@ -0,0 +1,62 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+// Pluggable fitness function that replaces an EA's built-in one, for fitness that is expensive to compute
+// (an external simulator, a remote service). Individuals are handed over in batches and the fitness values come
+// back asynchronously, so the EA can hand over more batches (or keep breeding) while earlier ones are evaluated.
+interface FitnessEvaluator<T> {
+    // Starts evaluating the batch, the future completes with one fitness value per individual in batch order
+    // The EAs don't touch the individuals of a batch until its future has completed
+    CompletableFuture<double[]> evaluate(List<T> batch);
+}
+
+// Runs a plain per-individual fitness function on an executor, one task per batch
+// The executor bounds the concurrency: a fixed pool for CPU-bound fitness functions, or an unbounded/virtual-thread
+// executor for I/O-bound ones (the EA's in-flight limit then still caps the number of outstanding batches).
+class PooledFitnessEvaluator<T> implements FitnessEvaluator<T>, AutoCloseable {
+    private final ToDoubleFunction<T> fitness;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor; // created by us and shut down by close(), null otherwise
+
+    // Evaluates on a new pool of the given number of daemon threads
+    PooledFitnessEvaluator(ToDoubleFunction<T> fitness, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fitness = fitness;
+        this.ownedExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "fitness-evaluator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor = ownedExecutor;
+    }
+
+    // Evaluates on the caller's executor, which is left running on close()
+    PooledFitnessEvaluator(ToDoubleFunction<T> fitness, Executor executor) {
+        this.fitness = fitness;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    @Override
+    public CompletableFuture<double[]> evaluate(List<T> batch) {
+        return CompletableFuture.supplyAsync(() -> {
+            double[] values = new double[batch.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = fitness.applyAsDouble(batch.get(i));
+            }
+            return values;
+        }, executor);
+    }
+
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+// Binary min-heap over the indices 0..n-1 of a population, keyed on their fitness
+// Unlike a PriorityQueue, every index knows its place in the heap, so the key of any individual can be changed in
+// O(log n) when it is replaced, and the current worst individual is always available in O(1).
+class IndexedMinHeap {
+    private final int[] heap;     // heap slot -> index
+    private final int[] position; // index -> heap slot
+    private final double[] keys;  // index -> key
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new double[capacity];
+    }
+
+    // Replaces the contents with indices 0..n-1 keyed on keys[0, n), in O(n)
+    void build(double[] keys, int n) {
+        if (n > heap.length) {
+            throw new IllegalArgumentException("Heap capacity " + heap.length + " is too small for " + n + " keys");
+        }
+        size = n;
+        System.arraycopy(keys, 0, this.keys, 0, n);
+        for (int i = 0; i < n; i++) {
+            heap[i] = i;
+            position[i] = i;
+        }
+        for (int slot = n / 2 - 1; slot >= 0; slot--) {
+            siftDown(slot);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Index with the smallest key
+    int peekMin() {
+        if (size == 0) {
+            throw new IllegalStateException("Heap is empty");
+        }
+        return heap[0];
+    }
+
+    double minKey() {
+        return keys[peekMin()];
+    }
+
+    double key(int index) {
+        return keys[index];
+    }
+
+    // Changes the key of an index that is in the heap and restores the heap order
+    void update(int index, double key) {
+        double old = keys[index];
+        keys[index] = key;
+        if (key < old) {
+            siftUp(position[index]);
+        } else {
+            siftDown(position[index]);
+        }
+    }
+
+    private void siftUp(int slot) {
+        int index = heap[slot];
+        double key = keys[index];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (keys[heap[parent]] <= key) {
+                break;
+            }
+            place(heap[parent], slot);
+            slot = parent;
+        }
+        place(index, slot);
+    }
+
+    private void siftDown(int slot) {
+        int index = heap[slot];
+        double key = keys[index];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            place(heap[child], slot);
+            slot = child;
+        }
+        place(index, slot);
+    }
+
+    private void place(int index, int slot) {
+        heap[slot] = index;
+        position[index] = slot;
+    }
+}
@@ -0,0 +1,12 @@
+import java.util.List;
+
+// One subpopulation of an island-model run (see IslandModel)
+// Every island is evolved by its own thread, so an implementation may only touch its own population and RNG.
+// Individuals crossing between islands are always copies, never shared objects.
+interface Island<T> extends Evolver<T> {
+    // Copies of the best individuals in the current population, safe to hand to another thread
+    List<T> emigrants(int count);
+
+    // Replaces the worst individuals in the current population with the given migrants
+    void immigrate(List<T> migrants);
+}
@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// How migrants travel between islands
+enum MigrationTopology {
+    RING,   // island i always sends to island i + 1
+    RANDOM  // every migration goes to a randomly chosen other island
+}
+
+// Island-model EA: K subpopulations evolve in parallel, each on its own thread with its own RNG, and every
+// migrationInterval generations each island sends copies of its best migrantCount individuals to a neighbour.
+// Islands never wait for each other. Every island has a one-slot inbox: a sender just overwrites the slot and the
+// receiver empties it with getAndSet(null) at its next generation boundary, so a slow island simply picks up the
+// newest batch (older, unread batches are dropped).
+// RANDOM destinations come from one stream per island, split off the model's seed, so for a given seed every island
+// sends to the same sequence of islands on every run.
+class IslandModel<T> {
+    private final List<? extends Island<T>> islands;
+    private final MigrationTopology topology;
+    private final int migrationInterval;
+    private final int migrantCount;
+    private final AtomicReferenceArray<List<T>> inboxes;
+    private final ReseedableRandom[] destinationRandoms; // one per island, only used on that island's thread
+
+    private long elapsedNanos;
+    private long totalGenerations;
+
+    public IslandModel(List<? extends Island<T>> islands, MigrationTopology topology, int migrationInterval, int migrantCount, long seed) {
+        if (islands.isEmpty()) {
+            throw new IllegalArgumentException("Island model needs at least one island");
+        }
+        if (migrationInterval <= 0) {
+            throw new IllegalArgumentException("Migration interval must be positive: " + migrationInterval);
+        }
+        this.islands = islands;
+        this.topology = topology;
+        this.migrationInterval = migrationInterval;
+        this.migrantCount = migrantCount;
+        this.inboxes = new AtomicReferenceArray<>(islands.size());
+        ReseedableRandom random = new ReseedableRandom(seed);
+        this.destinationRandoms = new ReseedableRandom[islands.size()];
+        for (int i = 0; i < destinationRandoms.length; i++) {
+            destinationRandoms[i] = random.split();
+        }
+    }
+
+    // Evolves every island for the given number of generations and blocks until all of them are done
+    public void run(int generations) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < islands.size(); i++) {
+            int index = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    evolve(index, generations);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "island-" + i);
+            threads.add(thread);
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for islands", e);
+            }
+        }
+        elapsedNanos += System.nanoTime() - start;
+        totalGenerations += (long) generations * islands.size();
+
+        if (failure.get() != null) {
+            throw new IllegalStateException("Island failed", failure.get());
+        }
+    }
+
+    // Generation loop of a single island, runs on that island's thread
+    private void evolve(int index, int generations) {
+        Island<T> island = islands.get(index);
+        for (int generation = 1; generation <= generations; generation++) {
+            List<T> arrivals = inboxes.getAndSet(index, null);
+            if (arrivals != null) {
+                island.immigrate(arrivals);
+            }
+
+            island.step();
+
+            if (islands.size() > 1 && migrantCount > 0 && generation % migrationInterval == 0) {
+                inboxes.set(destination(index), island.emigrants(migrantCount));
+            }
+        }
+    }
+
+    private int destination(int index) {
+        int count = islands.size();
+        if (topology == MigrationTopology.RING) {
+            return (index + 1) % count;
+        }
+        // Any island except ourselves
+        int other = destinationRandoms[index].nextInt(count - 1);
+        return other >= index ? other + 1 : other;
+    }
+
+    // Best individual over all islands
+    public T getBestIndividual() {
+        Island<T> best = islands.get(0);
+        for (Island<T> island : islands) {
+            if (island.getBestFitness() > best.getBestFitness()) {
+                best = island;
+            }
+        }
+        return best.getBestIndividual();
+    }
+
+    public List<? extends Island<T>> getIslands() {
+        return islands;
+    }
+
+    // Throughput over all run() calls, summed over islands
+    public double getGenerationsPerSecond() {
+        return elapsedNanos == 0 ? 0 : totalGenerations / (elapsedNanos / 1e9);
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// A knapsack problem instance: item values, item weights and the capacity
+//
+// Instances can be generated (the EA's original random items) or loaded from disk with load(), which maps the
+// file into memory and parses it straight into primitive arrays, without a String per line:
+//   - binary (little-endian): int magic "KNAP", int version, int n, long capacity, int[n] values, int[n] weights
+//     (write one with writeBinary, this is the fastest format by far)
+//   - plain text: "n capacity" followed by n lines "value weight"
+//   - Pisinger's format: a name line, "n <items>", "c <capacity>", "z ...", "time ...", then one
+//     "index,value,weight,x" line per item
+class KnapsackInstance {
+    static final int MAGIC = 0x50414E4B; // "KNAP" in little-endian byte order
+    static final int VERSION = 1;
+    private static final int BINARY_HEADER = 20;
+
+    private final int[] values;
+    private final int[] weights;
+    private final long capacity;
+
+    private volatile RatioOrder ratioOrder; // built on first use, see ratioOrder()
+
+    KnapsackInstance(int[] values, int[] weights, long capacity) {
+        if (values.length != weights.length) {
+            throw new IllegalArgumentException("Got " + values.length + " values but " + weights.length + " weights");
+        }
+        this.values = values;
+        this.weights = weights;
+        this.capacity = capacity;
+    }
+
+    // The EA's original instance: values 1, 2, 3, ..., random weights between 1 and 10, capacity half the total weight
+    static KnapsackInstance random(int items, long seed) {
+        SplittableRandom random = new SplittableRandom(seed).split();
+        int[] values = new int[items];
+        int[] weights = new int[items];
+        long totalWeight = 0;
+        for (int i = 0; i < items; i++) {
+            values[i] = i + 1;  // value of item i is i+1
+            weights[i] = random.nextInt(10) + 1;  // weight between 1 and 10
+            totalWeight += weights[i];
+        }
+        return new KnapsackInstance(values, weights, totalWeight / 2);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    // The arrays are shared, not copied: the EA reads them in its hot loops
+    int[] values() {
+        return values;
+    }
+
+    int[] weights() {
+        return weights;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    // Items sorted by ascending value/weight ratio, computed once per instance and shared by every EA using it
+    RatioOrder ratioOrder() {
+        RatioOrder order = ratioOrder;
+        if (order == null) {
+            synchronized (this) {
+                order = ratioOrder;
+                if (order == null) {
+                    order = new RatioOrder(values, weights);
+                    ratioOrder = order;
+                }
+            }
+        }
+        return order;
+    }
+
+    // Prints the capacity and all items, buffered so that even large instances print quickly
+    public void print(PrintStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out), 1 << 16);
+        try {
+            writer.write("Knapsack Capacity: " + capacity + "\nItem values: ");
+            for (int value : values) {
+                writer.write(Integer.toString(value));
+                writer.write(' ');
+            }
+            writer.write("\nItem weights: ");
+            for (int weight : weights) {
+                writer.write(Integer.toString(weight));
+                writer.write(' ');
+            }
+            writer.write("\n\n");
+            writer.flush();
+        } catch (IOException e) {
+            out.println("Could not print instance: " + e);
+        }
+    }
+
+    // ---------- Loading ----------
+
+    // Loads an instance in any of the supported formats (detected from the content)
+    static KnapsackInstance load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() >= BINARY_HEADER) {
+                ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                channel.read(magic, 0);
+                if (magic.getInt(0) == MAGIC) {
+                    return loadBinary(channel, path);
+                }
+            }
+            return loadText(channel, path);
+        }
+    }
+
+    private static KnapsackInstance loadBinary(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Truncated header in " + path);
+            }
+        }
+        header.flip();
+        header.getInt(); // magic
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported knapsack instance version " + version + " in " + path);
+        }
+        int n = header.getInt();
+        long capacity = header.getLong();
+        if (n < 0) {
+            throw new IOException("Negative item count " + n + " in " + path);
+        }
+        long sectionBytes = (long) n * Integer.BYTES;
+        if (channel.size() < BINARY_HEADER + 2 * sectionBytes) {
+            throw new IOException("Truncated item data in " + path);
+        }
+        // Each section is mapped on its own, which keeps every mapping below the 2 GB limit
+        int[] values = new int[n];
+        int[] weights = new int[n];
+        channel.map(FileChannel.MapMode.READ_ONLY, BINARY_HEADER, sectionBytes)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+        channel.map(FileChannel.MapMode.READ_ONLY, BINARY_HEADER + sectionBytes, sectionBytes)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(weights);
+        return new KnapsackInstance(values, weights, capacity);
+    }
+
+    private static KnapsackInstance loadText(FileChannel channel, Path path) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException(path + " is too large for a text instance, convert it to the binary format");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        ByteScanner scanner = new ByteScanner(buffer, path);
+        scanner.skipWhitespace();
+        if (scanner.atDigit()) {
+            return parsePlain(scanner);
+        }
+        return parsePisinger(scanner);
+    }
+
+    // "n capacity" followed by n "value weight" pairs
+    private static KnapsackInstance parsePlain(ByteScanner scanner) throws IOException {
+        int n = scanner.nextInt();
+        long capacity = scanner.nextLong();
+        if (n < 0) {
+            throw new IOException("Negative item count " + n + " in " + scanner.path);
+        }
+        int[] values = new int[n];
+        int[] weights = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = scanner.nextInt();
+            weights[i] = scanner.nextInt();
+        }
+        return new KnapsackInstance(values, weights, capacity);
+    }
+
+    // Name line, then "n", "c", "z" and "time" lines in any order, then "index,value,weight,x" item lines
+    private static KnapsackInstance parsePisinger(ByteScanner scanner) throws IOException {
+        scanner.skipLine(); // instance name
+        int n = -1;
+        long capacity = -1;
+        while (true) {
+            scanner.skipWhitespace();
+            if (scanner.atEnd()) {
+                throw new IOException("No item lines in " + scanner.path);
+            }
+            if (scanner.atDigit()) {
+                break;
+            }
+            if (scanner.skipWord("n")) {
+                n = scanner.nextInt();
+            } else if (scanner.skipWord("c")) {
+                capacity = scanner.nextLong();
+            }
+            scanner.skipLine();
+        }
+        if (n < 0 || capacity < 0) {
+            throw new IOException("Missing 'n' or 'c' line in " + scanner.path);
+        }
+        int[] values = new int[n];
+        int[] weights = new int[n];
+        for (int i = 0; i < n; i++) {
+            try {
+                scanner.nextLong(); // index
+                values[i] = scanner.nextInt();
+                weights[i] = scanner.nextInt();
+            } catch (IOException e) {
+                throw new IOException("Item " + (i + 1) + " of " + n + " in " + scanner.path + " is missing or truncated", e);
+            }
+            scanner.skipLine(); // x (membership in the optimal solution)
+        }
+        return new KnapsackInstance(values, weights, capacity);
+    }
+
+    // Writes the instance in the binary format
+    void writeBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ)) {
+            long sectionBytes = (long) values.length * Integer.BYTES;
+            ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(values.length).putLong(capacity).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.map(FileChannel.MapMode.READ_WRITE, BINARY_HEADER, sectionBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(values);
+            channel.map(FileChannel.MapMode.READ_WRITE, BINARY_HEADER + sectionBytes, sectionBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(weights);
+        }
+    }
+}
+
+// Items of a knapsack instance by ascending value/weight ratio (ties by index), for greedy repair
+// The sort runs over primitive longs: the ratio as an order-preserving 32-bit float key in the high half and the
+// item index in the low half, so even 10M items sort in a parallel primitive sort without boxing.
+class RatioOrder {
+    final int[] items;           // ascending ratio, items[0] is the least valuable per unit of weight
+    final int[] prefixMinWeight; // prefixMinWeight[k] = smallest weight among items[0..k]
+
+    RatioOrder(int[] values, int[] weights) {
+        int n = values.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            float ratio = weights[i] == 0 ? Float.POSITIVE_INFINITY : (float) values[i] / weights[i];
+            int bits = Float.floatToIntBits(ratio);
+            bits ^= (bits >> 31) & 0x7FFFFFFF; // negative floats sort in reverse by their raw bits, flip them
+            keys[i] = ((long) bits << 32) | i;
+        }
+        Arrays.parallelSort(keys);
+        items = new int[n];
+        prefixMinWeight = new int[n];
+        int min = Integer.MAX_VALUE;
+        for (int k = 0; k < n; k++) {
+            items[k] = (int) keys[k];
+            min = Math.min(min, weights[items[k]]);
+            prefixMinWeight[k] = min;
+        }
+    }
+}
@@ -1,211 +1,744 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
 
 
 // Class representing an individual candidate solution for the knapsack problem
-// The genotype is a bitstring (List<Boolean>), where each bit indicates whether the corresponding item is included
+// The genotype is a bitstring packed into a long[] (64 items per word), where bit i indicates whether item i is included
 class Individual {
-    private List<Boolean> genotype;
-    private Double fitness;
-
-    // Constructor: Creates an individual with a random bitstring of given length
-    public Individual(int genotypeLength) {
-        // Initialize genotype 
-        // For now, this is a bitstring that
-        // gets filled with random Boolean values. 
-        // Adapt to your liking 
-        this.genotype = new ArrayList<>();
-        Random random = new Random();
-        for (int i = 0; i < genotypeLength; i++) {
-            this.genotype.add(random.nextBoolean());
+    private long[] bits;
+    private int length;
+    private double fitness; // NaN until computed, kept primitive so evaluation never allocates
+
+    // Running totals of the selected items, kept up to date by mutation and crossover so that evaluating a
+    // changed individual costs O(changed bits) instead of a full pass over the genotype
+    private long totalValue;
+    private long totalWeight;
+    private boolean totalsKnown; // false until the first full evaluation, or after an untracked change
+
+    // Constructor: Creates an individual with a random bitstring of given length, drawn from the caller's stream
+    public Individual(int genotypeLength, ReseedableRandom random) {
+        // Every bit of a random long is an independent fair coin, so we can fill a whole word at a time
+        this.length = genotypeLength;
+        this.bits = new long[wordCount(genotypeLength)];
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] = random.nextLong();
         }
-        this.fitness = null; // Gets computed later, need null value to indicate it's not computed yet
+        clearTail();
+        this.fitness = Double.NaN; // Gets computed later, NaN indicates it's not computed yet
     }
 
     public Individual(List<Boolean> genotype) {
         // Initialize genotype with a given list of Boolean values
-        // This is useful for creating offspring from parents
-        // Again, adapt to your liking
-        this.genotype = new ArrayList<>(genotype);
-        this.fitness = null;
+        this.length = genotype.size();
+        this.bits = new long[wordCount(length)];
+        for (int i = 0; i < length; i++) {
+            if (genotype.get(i)) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+        this.fitness = Double.NaN;
+    }
+
+    // Wraps an already packed genotype (used for offspring, the array is not copied)
+    Individual(long[] bits, int length) {
+        this.bits = bits;
+        this.length = length;
+        this.fitness = Double.NaN;
+    }
+
+    // Number of 64-bit words needed to hold the given number of bits
+    static int wordCount(int length) {
+        return (length + 63) >>> 6;
+    }
+
+    // Bits past the end of the genotype are always kept at zero so word-level operations can ignore them
+    private void clearTail() {
+        if ((length & 63) != 0) {
+            bits[bits.length - 1] &= -1L >>> -length;
+        }
+    }
+
+    // Direct access to the packed words, bit i of the genotype is bit (i % 64) of word i / 64
+    long[] getBits() {
+        return bits;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean getGene(int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // Flips a single bit from outside the EA; the running totals can't follow, so they are recomputed on next evaluation
+    public void flipGene(int i) {
+        bits[i >>> 6] ^= 1L << i;
+        totalsKnown = false;
+        fitness = Double.NaN;
     }
 
     // Getter for genotype
+    // Kept for compatibility (e.g. Test.java), this is a view backed by the packed bits, not a copy
     public List<Boolean> getGenotype() {
-        return genotype;
+        return new AbstractList<Boolean>() {
+            @Override
+            public Boolean get(int i) {
+                Objects.checkIndex(i, length);
+                return getGene(i);
+            }
+
+            @Override
+            public Boolean set(int i, Boolean gene) {
+                boolean old = get(i);
+                if (old != gene) {
+                    flipGene(i);
+                }
+                return old;
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
     }
 
     // Getter and setter for fitness
+    // getFitness() returns null while the fitness is not computed yet; the EA itself uses the primitive accessors
     public Double getFitness() {
-        return fitness;
+        return hasFitness() ? fitness : null;
     }
-    public void setFitness(Double fitness) {
+    public void setFitness(double fitness) {
         this.fitness = fitness;
     }
+    double getFitnessValue() {
+        return fitness;
+    }
+    boolean hasFitness() {
+        return !Double.isNaN(fitness);
+    }
+    void clearFitness() {
+        fitness = Double.NaN;
+    }
 
-    // Mutation method: Iterates through the genotype and flips each bit with a specified mutation probability
-    public void mutate(double mutationProbability) {
-        Random random = new Random();
-        for (int i = 0; i < genotype.size(); i++) {
-            if (random.nextDouble() < mutationProbability) {
-                // Mutate by changing the value, for bitstrings this is flipping the bit
-                // Make sure it fits your chosen representation
-                genotype.set(i, !genotype.get(i));
-            }
+    // Running totals of the selected items
+    boolean hasTotals() {
+        return totalsKnown;
+    }
+    long getTotalValue() {
+        return totalValue;
+    }
+    long getTotalWeight() {
+        return totalWeight;
+    }
+    void setTotals(long totalValue, long totalWeight) {
+        this.totalValue = totalValue;
+        this.totalWeight = totalWeight;
+        this.totalsKnown = true;
+    }
+    void clearTotals() {
+        totalsKnown = false;
+    }
+
+    // Independent copy (genotype, totals and fitness), e.g. for migration to another thread
+    public Individual copy() {
+        Individual copy = new Individual(bits.clone(), length);
+        copy.copyState(this);
+        return copy;
+    }
+
+    // Overwrites this individual with the genotype, totals and fitness of another one of the same length, reusing our array
+    void copyFrom(Individual other) {
+        System.arraycopy(other.bits, 0, bits, 0, bits.length);
+        copyState(other);
+    }
+
+    private void copyState(Individual other) {
+        fitness = other.fitness;
+        totalValue = other.totalValue;
+        totalWeight = other.totalWeight;
+        totalsKnown = other.totalsKnown;
+    }
+
+    // Adds or removes one item and keeps the running totals (which must be known) in step
+    void flipItem(int i, int value, int weight) {
+        bits[i >>> 6] ^= 1L << i;
+        long sign = getGene(i) ? 1 : -1; // item added or removed
+        totalValue += sign * value;
+        totalWeight += sign * weight;
+        fitness = Double.NaN;
+    }
+
+    // Mutation method: flips each bit with the engine's mutation probability
+    // The engine jumps straight from one flipped position to the next, so this costs O(flips) rather than O(length),
+    // and every flip adjusts the running totals by the value and weight of that one item
+    public void mutate(MutationEngine engine, int[] values, int[] weights) {
+        for (int i = engine.nextSite(0, length); i < length; i = engine.nextSite(i + 1, length)) {
+            bits[i >>> 6] ^= 1L << i;
+            long sign = getGene(i) ? 1 : -1; // item added or removed
+            totalValue += sign * values[i];
+            totalWeight += sign * weights[i];
+            fitness = Double.NaN; // Genotype changed, the old fitness no longer applies
         }
     }
 }
 
+// Crossover operators available to the knapsack EA, all of them work on whole 64-bit words
+enum CrossoverType {
+    SINGLE_POINT,
+    TWO_POINT,
+    UNIFORM
+}
+
+// Which individual an offspring replaces in steady-state mode
+enum ReplacementPolicy {
+    WORST,            // the current worst individual of the population
+    TOURNAMENT_LOSER  // the worst of a few randomly picked individuals, keeps more diversity
+}
+
 // Class implementing the evolutionary algorithm for the knapsack problem
-class EvolutionaryAlgorithm {
+class EvolutionaryAlgorithm implements Island<Individual> {
     private int populationSize;
     private int genotypeLength;
     private double crossoverProbability;
     private double mutationProbability;
     private int generations;
-    private List<Individual> population;
-    private Random random;
+    private final ReseedableRandom random; // this EA's own stream, used by one thread only
+    private MutationEngine mutation;
+
+    // Two preallocated population buffers that swap every generation: offspring are bred in place into the
+    // individuals of the next buffer, so the steady-state generation loop does not allocate
+    private Individual[] population;
+    private Individual[] offspring;
+    private Individual spare; // absorbs the extra child when the population size is odd
+    private int[] parents; // indices of the selected breeders in population, parents[i] and parents[i + 1] breed children i and i + 1
+    private double[] fitnessValues; // fitness of population[i], filled once per generation for partial selection
+    private int[] order; // scratch index array for TopK
+
+    private int eliteCount = 0; // best individuals copied unchanged into the next generation
+    private Individual best; // copy of the best individual seen so far, null before the first evaluation
 
     // Fields specific to the knapsack problem:
-    private int[] weights; //holds the randomly generated weights for each item
+    private KnapsackInstance instance;
+    private int[] weights; //holds the weights for each item (shared with the instance)
     private int[] values; //holds the benefit (or reward) for each item
-    private int capacity; //the maximum weight allowed in the knapsack
+    private long capacity; //the maximum weight allowed in the knapsack
 
     private List<Double> bestFitnessHistory;
+    private int generation; // number of completed generations
+    private long generationSeed; // the RNG streams restarted from this at the start of the current generation
+    private long diversitySeed;  // the diversity tracker's stream restarts from this, drawn whether or not it's on
+    private boolean streamsAtGenerationSeed; // false once something outside the generation loop drew from them
+
+    // Optional background checkpointing (null means off)
+    private CheckpointWriter checkpointWriter;
+
+    private CrossoverType crossoverType = CrossoverType.SINGLE_POINT;
+
+    // Optional parallel fitness evaluation (null means always sequential)
+    private ForkJoinPool evaluationPool;
+    private int parallelThreshold = 256; // populations smaller than this are evaluated sequentially
+
+    // Optional memo of already evaluated genotypes (null means off)
+    private FitnessCache fitnessCache;
+
+    // Number of fitness evaluations so far, cache hits included (evaluation may run on several threads)
+    private final LongAdder evaluations = new LongAdder();
+
+    // Optional external fitness function replacing the built-in one (null means off), see setFitnessEvaluator
+    private FitnessEvaluator<Individual> fitnessEvaluator;
+    private int evaluationBatchSize;
+    private Semaphore inFlightBatches; // one permit per batch that may be out for evaluation at the same time
+
+    // Repair infeasible individuals (and fill up spare capacity) greedily before evaluating them
+    private boolean repair = false;
+
+    // Optional per-generation diversity measurement (null means off), see setDiversityTracking
+    private DiversityTracker diversityTracker;
+    private final List<DiversitySample> diversityHistory = new ArrayList<>();
+    // Adaptive mutation: while the normalized diversity is below the threshold the mutation probability doubles
+    // every generation (up to the maximum), afterwards it halves back down to mutationProbability. 0 means off.
+    private double adaptiveMutationThreshold = 0;
+    private double adaptiveMutationMaximum;
+
+    // Debug mode: cross-check the incrementally maintained totals against a full recompute on every evaluation
+    private boolean verifyIncrementalFitness = false;
+
+    // Value and weight gained by the first child during the current crossover (the second child gets the negation)
+    private long crossoverValueDelta;
+    private long crossoverWeightDelta;
+
+    // Steady-state mode: the population ordered by fitness for replacement, rebuilt whenever the population is
+    // changed outside of steadyStateStep (null or stale means it has to be rebuilt before the next step)
+    private IndexedMinHeap replacementHeap;
+    private boolean replacementHeapValid = false;
+    private ReplacementPolicy replacementPolicy = ReplacementPolicy.WORST;
+    private int replacementTournamentSize = 4;
+    private Individual steadyChild1; // preallocated children of a steady-state step
+    private Individual steadyChild2;
+
+    // Best fitness so far against the number of evaluations, recorded by loopSteadyState
+    private final List<Long> traceEvaluations = new ArrayList<>();
+    private final List<Double> traceBestFitness = new ArrayList<>();
+    private double steadyStateEvaluationsPerSecond;
     
     public EvolutionaryAlgorithm(int populationSize, int genotypeLength, double crossoverProbability, double mutationProbability, int generations) {
+        this(populationSize, genotypeLength, crossoverProbability, mutationProbability, generations, new SplittableRandom().nextLong());
+    }
+
+    // Same as above, but all randomness (items, population, operators) is derived from the given seed
+    public EvolutionaryAlgorithm(int populationSize, int genotypeLength, double crossoverProbability, double mutationProbability, int generations, long seed) {
+        this(populationSize, KnapsackInstance.random(genotypeLength, seed), crossoverProbability, mutationProbability, generations, seed);
+        // Print item information and capacity for reference.
+        instance.print(System.out);
+    }
+
+    // Runs on a given (e.g. loaded) instance; nothing is printed, call getInstance().print() for that
+    public EvolutionaryAlgorithm(int populationSize, KnapsackInstance instance, double crossoverProbability, double mutationProbability, int generations, long seed) {
         // Initialize the evolutionary algorithm with the given parameters
         this.populationSize = populationSize;
-        this.genotypeLength = genotypeLength;
+        this.genotypeLength = instance.size();
         this.crossoverProbability = crossoverProbability;
         this.mutationProbability = mutationProbability;
         this.generations = generations;
-        this.random = new Random();
+        this.random = new ReseedableRandom(seed);
+        this.mutation = new MutationEngine(mutationProbability, random.split());
         bestFitnessHistory = new ArrayList<>();
 
-        // Initialize items: assign values 1, 2, 3, ... and random weights between 1 and 10.
-        values = new int[genotypeLength];
-        weights = new int[genotypeLength];
-        int totalWeight = 0;
-        for (int i = 0; i < genotypeLength; i++) {
-            values[i] = i + 1;  // value of item i is i+1
-            weights[i] = random.nextInt(10) + 1;  // weight between 1 and 10
-            totalWeight += weights[i];
-        }
-        // Set the knapsack capacity, e.g., half the total weight of all items.
-        capacity = totalWeight / 2;
+        this.instance = instance;
+        values = instance.values();
+        weights = instance.weights();
+        capacity = instance.getCapacity();
 
-        // Print item information and capacity for reference.
-        System.out.println("Knapsack Capacity: " + capacity);
-        System.out.print("Item values: ");
-        for (int val : values) {
-            System.out.print(val + " ");
-        }
-        System.out.println();
-        System.out.print("Item weights: ");
-        for (int wt : weights) {
-            System.out.print(wt + " ");
+        // Create the initial population.
+        initializePopulation();
+        startGeneration();
+    }
+
+    // Creates an island for IslandModel: same knapsack items and parameters, but its own population and RNG
+    private EvolutionaryAlgorithm(EvolutionaryAlgorithm source, int populationSize) {
+        this.populationSize = populationSize;
+        this.genotypeLength = source.genotypeLength;
+        this.crossoverProbability = source.crossoverProbability;
+        this.mutationProbability = source.mutationProbability;
+        this.generations = source.generations;
+        this.random = source.random.split();
+        this.mutation = new MutationEngine(mutationProbability, random.split());
+        this.bestFitnessHistory = new ArrayList<>();
+        this.instance = source.instance;
+        this.values = source.values;
+        this.weights = source.weights;
+        this.capacity = source.capacity;
+        this.crossoverType = source.crossoverType;
+        this.eliteCount = source.eliteCount;
+        this.repair = source.repair;
+        if (source.diversityTracker != null) {
+            this.diversityTracker = new DiversityTracker(genotypeLength, source.diversityTracker.getSamplePairs(), random.split());
         }
-        System.out.println("\n");
+        this.adaptiveMutationThreshold = source.adaptiveMutationThreshold;
+        this.adaptiveMutationMaximum = source.adaptiveMutationMaximum;
+        this.replacementPolicy = source.replacementPolicy;
+        this.replacementTournamentSize = source.replacementTournamentSize;
+        this.evaluationPool = source.evaluationPool;
+        this.parallelThreshold = source.parallelThreshold;
+        this.fitnessCache = source.fitnessCache; // thread-safe, so islands can share what they've seen
+        this.fitnessEvaluator = source.fitnessEvaluator;
+        this.evaluationBatchSize = source.evaluationBatchSize;
+        this.inFlightBatches = source.inFlightBatches; // the in-flight limit is for the evaluator, so it's shared too
+        initializePopulation();
+        startGeneration();
+    }
 
-        // Create the initial population.
-        this.population = initializePopulation();
+    // Spawns a new island sharing this EA's knapsack instance (see IslandModel)
+    public EvolutionaryAlgorithm createIsland(int populationSize) {
+        streamsAtGenerationSeed = false; // the island's stream is split off ours
+        return new EvolutionaryAlgorithm(this, populationSize);
     }
 
-    private List<Individual> initializePopulation() {
-        // This creates a population of Individuals
-        List<Individual> initialPopulation = new ArrayList<>();
+    private void initializePopulation() {
+        // This creates a population of Individuals, plus the buffer their offspring will be bred into
+        population = new Individual[populationSize];
+        offspring = new Individual[populationSize];
         for (int i = 0; i < populationSize; i++) {
             // The specifics of the generated individual can be changed in the Individual class
-            initialPopulation.add(new Individual(genotypeLength));
+            population[i] = new Individual(genotypeLength, random);
+            offspring[i] = new Individual(new long[Individual.wordCount(genotypeLength)], genotypeLength);
         }
-        return initialPopulation;
+        spare = new Individual(new long[Individual.wordCount(genotypeLength)], genotypeLength);
+        parents = new int[populationSize + 1]; // room for a pair at every position, elites shift where breeding starts
+        fitnessValues = new double[populationSize];
+        order = new int[populationSize];
     }
 
-    // For each individual, sum the values and weights of selected items
-    // If the total weight is within the capacity, the fitness equals the total value
-    // Otherwise, the fitness is penalized by scaling the total value by (capacity/totalWeight)
-    private void evaluateFitness() {
+    // Evaluates every individual whose fitness is still unset
+    // Large populations are split into chunks on the evaluation pool (if one is configured), smaller ones stay
+    // sequential so they don't pay the scheduling overhead. Every individual is computed by the same code either
+    // way, so both paths give bit-identical fitness values.
+    void evaluateFitness() {
+        if (fitnessEvaluator != null) {
+            evaluateWithEvaluator();
+            return;
+        }
+        if (evaluationPool != null && populationSize >= parallelThreshold) {
+            int chunkSize = Math.max(1, populationSize / (evaluationPool.getParallelism() * 4));
+            evaluationPool.invoke(new EvaluationTask(0, populationSize, chunkSize));
+            return;
+        }
         for (Individual individual : population) {
-            // Since fitness is set to null on construction, you can avoid computing it more than once
-            if (individual.getFitness() == null) {
-                // Placeholder: Calculate and set fitness for each individual
-                // You can do the calculation here or in the Individual class
-                // Use individual.setFitness(...) if you calculate it here
-                // For now this just sets a random fitness
-                double totalValue = 0;
-                double totalWeight = 0;
-                List<Boolean> genotype = individual.getGenotype();
-                // Sum up the value and weight for items that are selected.
-                for (int i = 0; i < genotype.size(); i++) {
-                    if (genotype.get(i)) {
-                        totalValue += values[i];
-                        totalWeight += weights[i];
+            // Since fitness is unset on construction, you can avoid computing it more than once
+            if (!individual.hasFitness()) {
+                individual.setFitness(fitnessOf(individual));
+            }
+        }
+    }
+
+    // Evaluates the individuals in population[from, to), splitting in half until a range fits in one chunk
+    private class EvaluationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        EvaluationTask(int from, int to, int chunkSize) {
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int i = from; i < to; i++) {
+                    Individual individual = population[i];
+                    if (!individual.hasFitness()) {
+                        individual.setFitness(fitnessOf(individual));
                     }
                 }
-                // If the total weight is within the capacity, fitness equals the total value.
-                // Otherwise, apply a penalty by scaling down the value.
-                if (totalWeight <= capacity) {
-                    individual.setFitness(totalValue);
-                } else {
-                    individual.setFitness(totalValue * ((double) capacity / totalWeight*10));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new EvaluationTask(from, mid, chunkSize), new EvaluationTask(mid, to, chunkSize));
+        }
+    }
+
+    // Hands the unevaluated individuals to the fitness evaluator in batches, as many at once as the in-flight limit
+    // allows, and waits until all of them are back
+    private void evaluateWithEvaluator() {
+        List<CompletableFuture<List<Individual>>> pending = new ArrayList<>();
+        List<Individual> batch = new ArrayList<>(evaluationBatchSize);
+        for (Individual individual : population) {
+            if (individual.hasFitness() || servedFromCache(individual)) {
+                continue;
+            }
+            batch.add(individual);
+            if (batch.size() == evaluationBatchSize) {
+                pending.add(submitBatch(batch));
+                batch = new ArrayList<>(evaluationBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            pending.add(submitBatch(batch));
+        }
+        for (CompletableFuture<List<Individual>> future : pending) {
+            awaitBatch(future);
+        }
+    }
+
+    // Sends one batch to the fitness evaluator once an in-flight slot is free (this is the backpressure: the caller
+    // blocks while maxInFlight batches are out). The returned future completes, with the batch, after every
+    // individual in it has its fitness set (and cached).
+    private CompletableFuture<List<Individual>> submitBatch(List<Individual> batch) {
+        inFlightBatches.acquireUninterruptibly();
+        evaluations.add(batch.size());
+        CompletableFuture<double[]> evaluation;
+        try {
+            evaluation = fitnessEvaluator.evaluate(batch);
+        } catch (RuntimeException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+        return evaluation.whenComplete((fitness, failure) -> inFlightBatches.release())
+                .thenApply(fitness -> {
+                    if (fitness.length != batch.size()) {
+                        throw new IllegalStateException("Evaluator returned " + fitness.length + " values for a batch of " + batch.size());
+                    }
+                    for (int i = 0; i < fitness.length; i++) {
+                        Individual individual = batch.get(i);
+                        individual.setFitness(fitness[i]);
+                        if (fitnessCache != null) {
+                            fitnessCache.put(FitnessCache.hashBits(individual.getBits()), individual.getBits(), fitness[i]);
+                        }
+                    }
+                    return batch;
+                });
+    }
+
+    private static List<Individual> awaitBatch(CompletableFuture<List<Individual>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Fitness evaluation failed", e.getCause());
+        }
+    }
+
+    // For individuals bound for the evaluator: repairs them (if enabled), then sets the fitness from the fitness
+    // cache if it has this genotype. False means the individual still has to go to the evaluator.
+    private boolean servedFromCache(Individual individual) {
+        if (repair) {
+            repair(individual);
+        }
+        if (fitnessCache == null) {
+            return false;
+        }
+        long[] bits = individual.getBits();
+        double cached = fitnessCache.get(FitnessCache.hashBits(bits), bits);
+        if (Double.isNaN(cached)) {
+            return false;
+        }
+        evaluations.increment();
+        individual.setFitness(cached);
+        return true;
+    }
+
+    // Fitness of one individual, served from the fitness cache when one is configured
+    private double fitnessOf(Individual individual) {
+        evaluations.increment();
+        if (repair) {
+            repair(individual); // Lamarckian: the repaired genotype replaces the original
+        }
+        if (fitnessCache == null) {
+            return computeFitness(individual);
+        }
+        long[] bits = individual.getBits();
+        long hash = FitnessCache.hashBits(bits);
+        double cached = fitnessCache.get(hash, bits);
+        if (!Double.isNaN(cached)) {
+            return cached;
+        }
+        double fitness = computeFitness(individual);
+        fitnessCache.put(hash, bits, fitness);
+        return fitness;
+    }
+
+    // Fitness from the running value and weight totals of the selected items (computed in full only once)
+    // If the total weight is within the capacity, the fitness equals the total value
+    // Otherwise, the fitness is penalized by scaling the total value by (capacity/totalWeight)
+    private double computeFitness(Individual individual) {
+        if (!individual.hasTotals()) {
+            recomputeTotals(individual);
+        } else if (verifyIncrementalFitness) {
+            long incrementalValue = individual.getTotalValue();
+            long incrementalWeight = individual.getTotalWeight();
+            recomputeTotals(individual);
+            if (incrementalValue != individual.getTotalValue() || incrementalWeight != individual.getTotalWeight()) {
+                throw new IllegalStateException("Incremental totals drifted: value " + incrementalValue + " vs "
+                        + individual.getTotalValue() + ", weight " + incrementalWeight + " vs " + individual.getTotalWeight());
+            }
+        }
+        return knapsackFitness(individual.getTotalValue(), individual.getTotalWeight(), capacity);
+    }
+
+    // The knapsack fitness itself, shared with ProbabilityVectorEA so both optimize exactly the same function
+    static double knapsackFitness(double totalValue, double totalWeight, long capacity) {
+        // If the total weight is within the capacity, fitness equals the total value.
+        // Otherwise, apply a penalty by scaling down the value.
+        if (totalWeight <= capacity) {
+            return totalValue;
+        }
+        return totalValue * ((double) capacity / totalWeight*10);
+    }
+
+    // Repair-and-improve for infeasible (and underfilled) knapsacks, using the instance's ratio order and the
+    // individual's running totals:
+    //   1. while over capacity, drop selected items starting from the lowest value/weight ratio
+    //   2. then add unselected items starting from the highest ratio, until the first one that doesn't fit
+    //      (or nothing left is light enough to fit)
+    // Each phase only walks the order as far as it needs to, so a repair costs about the number of items it looks
+    // at rather than a pass over the whole genotype.
+    private void repair(Individual individual) {
+        if (!individual.hasTotals()) {
+            recomputeTotals(individual);
+        }
+        RatioOrder ratioOrder = instance.ratioOrder();
+        int[] items = ratioOrder.items;
+        long weight = individual.getTotalWeight();
+        for (int k = 0; weight > capacity && k < items.length; k++) {
+            int i = items[k];
+            if (individual.getGene(i)) {
+                individual.flipItem(i, values[i], weights[i]);
+                weight -= weights[i];
+            }
+        }
+        for (int k = items.length - 1; k >= 0 && capacity - weight >= ratioOrder.prefixMinWeight[k]; k--) {
+            int i = items[k];
+            if (!individual.getGene(i)) {
+                if (weight + weights[i] > capacity) {
+                    break;
                 }
-            }    
+                individual.flipItem(i, values[i], weights[i]);
+                weight += weights[i];
+            }
         }
     }
 
+    // Full O(n) pass over the genotype, only needed for individuals whose totals aren't tracked yet
+    private void recomputeTotals(Individual individual) {
+        long totalValue = 0;
+        long totalWeight = 0;
+        long[] bits = individual.getBits();
+        // Sum up the value and weight for items that are selected, visiting only the set bits.
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                totalValue += values[i];
+                totalWeight += weights[i];
+                word &= word - 1; // Clear the lowest set bit
+            }
+        }
+        individual.setTotals(totalValue, totalWeight);
+    }
+
     // Parent selection using tournament selection
-    // A subset of individuals (tournamentSize) is sampled randomly and the one with the highest fitness is selected
-    private Individual selectBreeder() {
+    // A subset of individuals (tournamentSize) is sampled randomly and the index of the one with the highest fitness is returned
+    int selectBreeder() {
         // Placeholder: Implement parent selection logic (e.g., tournament or roulette wheel)
         // If you want you can choose to return multiple (e.g. 2) individuals, 
         // but you will have to change the singature of this method and change 
         // how it is used in the loop method
         // For now, this just returns a random individual
         int tournamentSize = 40;
-        Individual best = null;
+        int best = -1;
         // Randomly pick 'tournamentSize' individuals and select the one with highest fitness
         for (int i = 0; i < tournamentSize; i++) {
-            Individual contender = population.get(random.nextInt(populationSize));
-            if (best == null || contender.getFitness() > best.getFitness()) {
+            int contender = random.nextInt(populationSize);
+            if (best == -1 || population[contender].getFitnessValue() > population[best].getFitnessValue()) {
                 best = contender;
             }
         }
         return best;
     }
 
-    // Single-point crossover operator
-    // A crossover point is chosen randomly; the offspring take the first part of one parent's genotype
-    // and the second part from the other parent
-    private List<Individual> crossover(Individual parent1, Individual parent2) {
-        // This just implements single-point crossover. You can and should implement other types of crossover
-        int crossoverPoint = random.nextInt(genotypeLength - 1) + 1;
-        List<Boolean> child1Genotype = new ArrayList<>();
-        List<Boolean> child2Genotype = new ArrayList<>();
+    // Crossover operator, dispatches on the configured crossover type
+    // Children start as copies of the parents and then exchange bits, a whole 64-bit word at a time
+    // The children are written in place into the two given (preallocated) individuals
+    void crossover(Individual parent1, Individual parent2, Individual offspring1, Individual offspring2) {
+        long[] child1 = offspring1.getBits();
+        long[] child2 = offspring2.getBits();
+        System.arraycopy(parent1.getBits(), 0, child1, 0, child1.length);
+        System.arraycopy(parent2.getBits(), 0, child2, 0, child2.length);
+        offspring1.clearFitness();
+        offspring2.clearFitness();
+        crossoverValueDelta = 0;
+        crossoverWeightDelta = 0;
 
-        child1Genotype.addAll(parent1.getGenotype().subList(0, crossoverPoint));
-        child1Genotype.addAll(parent2.getGenotype().subList(crossoverPoint, genotypeLength));
+        switch (crossoverType) {
+            case SINGLE_POINT: {
+                // A crossover point is chosen randomly; the offspring take the first part of one parent's genotype
+                // and the second part from the other parent
+                int crossoverPoint = random.nextInt(genotypeLength - 1) + 1;
+                swapRange(child1, child2, crossoverPoint, genotypeLength);
+                break;
+            }
+            case TWO_POINT: {
+                // The segment between two random points is exchanged
+                int point1 = random.nextInt(genotypeLength);
+                int point2 = random.nextInt(genotypeLength);
+                if (point1 > point2) {
+                    int temp = point1;
+                    point1 = point2;
+                    point2 = temp;
+                }
+                swapRange(child1, child2, point1, point2 + 1);
+                break;
+            }
+            case UNIFORM: {
+                // Every bit comes from either parent with equal probability, a random long is 64 coin flips
+                for (int w = 0; w < child1.length; w++) {
+                    swapMasked(child1, child2, w, random.nextLong());
+                }
+                break;
+            }
+        }
+
+        // Only the exchanged bits that differed between the parents change the totals
+        if (parent1.hasTotals() && parent2.hasTotals()) {
+            offspring1.setTotals(parent1.getTotalValue() + crossoverValueDelta, parent1.getTotalWeight() + crossoverWeightDelta);
+            offspring2.setTotals(parent2.getTotalValue() - crossoverValueDelta, parent2.getTotalWeight() - crossoverWeightDelta);
+        } else {
+            offspring1.clearTotals();
+            offspring2.clearTotals();
+        }
+    }
 
-        child2Genotype.addAll(parent2.getGenotype().subList(0, crossoverPoint));
-        child2Genotype.addAll(parent1.getGenotype().subList(crossoverPoint, genotypeLength));
+    // Swaps the bits in positions [from, to) between a and b
+    // Only the two boundary words need masking, the words in between are swapped whole
+    private void swapRange(long[] a, long[] b, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;  // bits from (from % 64) upwards
+        long lastMask = -1L >>> -to;   // bits below (to % 64), or the whole word if to is a multiple of 64
+        if (firstWord == lastWord) {
+            swapMasked(a, b, firstWord, firstMask & lastMask);
+            return;
+        }
+        swapMasked(a, b, firstWord, firstMask);
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            swapMasked(a, b, w, -1L);
+        }
+        swapMasked(a, b, lastWord, lastMask);
+    }
 
-        List<Individual> children = new ArrayList<>();
-        children.add(new Individual(child1Genotype));
-        children.add(new Individual(child2Genotype));
-        return children;
+    // Swaps the bits selected by mask between word w of a and b
+    // Only bits where a and b differ matter: a gains the items set in b and loses the ones set in a
+    private void swapMasked(long[] a, long[] b, int w, long mask) {
+        long diff = (a[w] ^ b[w]) & mask;
+        if (diff == 0) {
+            return;
+        }
+        for (long gained = diff & b[w]; gained != 0; gained &= gained - 1) {
+            int i = (w << 6) + Long.numberOfTrailingZeros(gained);
+            crossoverValueDelta += values[i];
+            crossoverWeightDelta += weights[i];
+        }
+        for (long lost = diff & a[w]; lost != 0; lost &= lost - 1) {
+            int i = (w << 6) + Long.numberOfTrailingZeros(lost);
+            crossoverValueDelta -= values[i];
+            crossoverWeightDelta -= weights[i];
+        }
+        a[w] ^= diff;
+        b[w] ^= diff;
     }
 
     // Print detailed info about the best individual.
     private void printBestIndividualInfo(int generation) {
-        Individual best = population.get(0);
         double totalValue = 0;
         double totalWeight = 0;
         StringBuilder genotypeStr = new StringBuilder();
-        List<Boolean> genotype = best.getGenotype();
-        for (int i = 0; i < genotype.size(); i++) {
-            boolean gene = genotype.get(i);
+        for (int i = 0; i < best.length(); i++) {
+            boolean gene = best.getGene(i);
             genotypeStr.append(gene ? "1" : "0");
             if (gene) {
                 totalValue += values[i];
@@ -220,80 +753,588 @@ class EvolutionaryAlgorithm {
     }
 
     public void loop() {
-        for (int generation = 0; generation < generations; generation++) {
-            evaluateFitness();
-
-            // Sort population by fitness in descending order
-            population.sort((a, b) -> Double.compare(b.getFitness(), a.getFitness()));
-
-            bestFitnessHistory.add(population.get(0).getFitness());
+        // Starts at 0, or wherever a resumed checkpoint left off
+        while (generation < generations) {
+            step();
 
             // Print the best fitness in the current generation
-            // if (generation == 0) 
-            //     System.out.println("Generation Zero (Probably Random Init): Best Fitness = " + population.get(0).getFitness());
+            // if (generation == 1) 
+            //     System.out.println("Generation Zero (Probably Random Init): Best Fitness = " + bestFitnessHistory.get(generation - 1));
             // else 
-            //     System.out.println("Generation " + (generation) + ": Best Fitness = " + population.get(0).getFitness());
-
-
-            // Generate breeding pool
-            List<Individual> breedingPool = new LinkedList<>();
-            while (breedingPool.size() < populationSize)
-                breedingPool.add(selectBreeder());
-
-            List<Individual> nextGeneration = new ArrayList<>();
-
-            // If you want to use Elitism, this is the place.
-            // You can add the best individuals from the current generation to the next generation
-            // You might want to avoid mutation on these individuals below
-
-            // This loop creates the (rest of the) next generation
-            while (nextGeneration.size() < populationSize) {
-                Individual parent1 = breedingPool.remove(0);
-                Individual parent2 = breedingPool.remove(0);
-
-                List<Individual> offspring;
-                // Crossover with probability crossoverProbability
-                if (random.nextDouble() < crossoverProbability)
-                    offspring = crossover(parent1, parent2);
-                else {
-                    // If no crossover, offspring are the parents
-                    offspring = new ArrayList<>();
-                    offspring.add(parent1);
-                    offspring.add(parent2);
-                }
+            //     System.out.println("Generation " + (generation - 1) + ": Best Fitness = " + bestFitnessHistory.get(generation - 1));
 
-                for (Individual child : offspring) {
-                    // Mutate with probability mutationProbability
-                    child.mutate(mutationProbability);
-                    // Then add the child to the next generation
-                    nextGeneration.add(child);
-                    if (nextGeneration.size() >= populationSize) break; // Odd population size catch
-                }
+            if (checkpointWriter != null && checkpointWriter.isDue(generation)) {
+                checkpointWriter.submit(createCheckpoint());
             }
-
-            // Replace the old population with the new generation
-            population = nextGeneration;
         }
-        // Evaluate the fitness of the final generation
+        finishCheckpointing();
+        // Evaluate the fitness of the final generation, which also brings the best individual up to date
         evaluateFitness();
-        // Sort population by fitness in descending order one last time
-        population.sort((a, b) -> Double.compare(b.getFitness(), a.getFitness()));
+        rankPopulation();
         // Print the best fitness in the final generation
         // You can also print the best individual's genotype here
-       // System.out.println("Final Generation, i.e. " + (generations) + ": Best Fitness = " + population.get(0).getFitness());
+       // System.out.println("Final Generation, i.e. " + (generations) + ": Best Fitness = " + best.getFitness());
        printBestIndividualInfo(generations);
     }
 
+    // Runs a single generation: evaluates the current population, then replaces it with its offspring
+    // Nothing is allocated here: parents are selected as indices into the current buffer and their offspring are
+    // written into the individuals of the other buffer, after which the two buffers swap roles
+    // The population is never sorted, only the elites are picked out by partial selection
+    @Override
+    public void step() {
+        evaluateFitness();
+        int bestIndex = rankPopulation();
+        bestFitnessHistory.add(fitnessValues[bestIndex]);
+        if (diversityTracker != null) {
+            trackDiversity();
+        }
+
+        // Elitism: the best individuals go into the next generation unchanged, fitness and totals included,
+        // so they are neither mutated nor evaluated again
+        int elites = Math.min(eliteCount, populationSize);
+        if (elites > 0) {
+            TopK.largest(fitnessValues, populationSize, elites, order);
+            for (int i = 0; i < elites; i++) {
+                offspring[i].copyFrom(population[order[i]]);
+            }
+        }
+
+        // Generate breeding pool, one pair per two places left
+        int breedersEnd = elites + ((populationSize - elites + 1) & ~1);
+        for (int i = elites; i < breedersEnd; i++)
+            parents[i] = selectBreeder();
+
+        // This loop creates the rest of the next generation
+        // For an odd number of places left the last second child lands in the spare individual and is dropped
+        for (int i = elites; i < populationSize; i += 2) {
+            Individual parent1 = population[parents[i]];
+            Individual parent2 = population[parents[i + 1]];
+            Individual child1 = offspring[i];
+            Individual child2 = i + 1 < populationSize ? offspring[i + 1] : spare;
+
+            // Crossover with probability crossoverProbability
+            if (random.nextDouble() < crossoverProbability)
+                crossover(parent1, parent2, child1, child2);
+            else {
+                // If no crossover, offspring are copies of the parents
+                child1.copyFrom(parent1);
+                child2.copyFrom(parent2);
+            }
+
+            // Mutate with probability mutationProbability
+            child1.mutate(mutation, values, weights);
+            child2.mutate(mutation, values, weights);
+        }
+
+        // Replace the old population with the new generation, the old one becomes the next offspring buffer
+        Individual[] previous = population;
+        population = offspring;
+        offspring = previous;
+        generation++;
+        replacementHeapValid = false;
+        startGeneration();
+    }
+
+    // Records the diversity of the current (evaluated) population and adapts the mutation probability to it
+    private void trackDiversity() {
+        DiversitySample sample = diversityTracker.measure(generation, population, populationSize);
+        diversityHistory.add(sample);
+        if (adaptiveMutationThreshold <= 0) {
+            return;
+        }
+        double probability = mutation.getProbability();
+        if (sample.normalizedDistance < adaptiveMutationThreshold) {
+            // Converged: mutate harder, starting from one flip per genotype if the base rate is 0
+            probability = Math.min(adaptiveMutationMaximum, Math.max(probability * 2, 1.0 / genotypeLength));
+        } else {
+            probability = Math.max(mutationProbability, probability / 2);
+        }
+        mutation.setProbability(probability);
+    }
+
+    // ---------- Steady-state mode ----------
+
+    // Evolves until the given number of further fitness evaluations is used up, one steadyStateStep at a time
+    // Every traceInterval evaluations the best fitness so far is added to the evaluation trace
+    public void loopSteadyState(long evaluationBudget, long traceInterval) {
+        long start = System.nanoTime();
+        long startEvaluations = getEvaluations();
+        long end = startEvaluations + evaluationBudget;
+        ensureReplacementHeap();
+        recordTrace();
+        long nextTrace = getEvaluations() + traceInterval;
+        while (getEvaluations() < end) {
+            steadyStateStep();
+            if (getEvaluations() >= nextTrace) {
+                recordTrace();
+                nextTrace += traceInterval;
+            }
+        }
+        recordTrace();
+        long elapsed = System.nanoTime() - start;
+        steadyStateEvaluationsPerSecond = elapsed == 0 ? 0 : (getEvaluations() - startEvaluations) * 1e9 / elapsed;
+    }
+
+    // One steady-state step: two parents breed two children, which are evaluated right away and each replace an
+    // individual of the population chosen by the replacement policy. The best individual is kept up to date.
+    public void steadyStateStep() {
+        ensureReplacementHeap();
+        breedPair(steadyChild1, steadyChild2);
+        if (fitnessEvaluator != null) {
+            evaluatePair(steadyChild1, steadyChild2);
+        }
+        replaceWith(steadyChild1);
+        replaceWith(steadyChild2);
+    }
+
+    // Two tournament-selected parents breed the two given children
+    private void breedPair(Individual child1, Individual child2) {
+        streamsAtGenerationSeed = false; // steady-state breeding has no generation boundaries
+        Individual parent1 = population[selectBreeder()];
+        Individual parent2 = population[selectBreeder()];
+        if (random.nextDouble() < crossoverProbability) {
+            crossover(parent1, parent2, child1, child2);
+        } else {
+            child1.copyFrom(parent1);
+            child2.copyFrom(parent2);
+        }
+        child1.mutate(mutation, values, weights);
+        child2.mutate(mutation, values, weights);
+    }
+
+    // Synchronous round trip through the fitness evaluator, for steadyStateStep
+    private void evaluatePair(Individual child1, Individual child2) {
+        List<Individual> batch = new ArrayList<>(2);
+        for (Individual child : new Individual[]{child1, child2}) {
+            if (!child.hasFitness() && !servedFromCache(child)) {
+                batch.add(child);
+            }
+        }
+        if (!batch.isEmpty()) {
+            awaitBatch(submitBatch(batch));
+        }
+    }
+
+    // Steady-state evolution with the fitness evaluator working in the background: the EA keeps breeding and
+    // sending out batches while earlier ones are evaluated, up to the in-flight limit, after which it waits for one
+    // to come back. Returning children replace individuals as in steadyStateStep, in the order they complete.
+    // Evaluations count when a batch is sent out, so the budget is reached once the last batch has returned.
+    public void loopSteadyStateAsync(long evaluationBudget, long traceInterval) {
+        if (fitnessEvaluator == null) {
+            throw new IllegalStateException("Asynchronous steady-state mode needs a fitness evaluator");
+        }
+        long start = System.nanoTime();
+        long startEvaluations = getEvaluations();
+        long end = startEvaluations + evaluationBudget;
+        ensureReplacementHeap();
+        recordTrace();
+        long nextTrace = getEvaluations() + traceInterval;
+
+        BlockingQueue<CompletableFuture<List<Individual>>> completed = new LinkedBlockingQueue<>();
+        ArrayDeque<Individual> freeChildren = new ArrayDeque<>();
+        int outstanding = 0;
+        while (getEvaluations() < end || outstanding > 0) {
+            CompletableFuture<List<Individual>> done = completed.poll();
+            // Only wait for a batch of our own: the permits are shared with the other islands, so with none of ours
+            // out they may all be held elsewhere, and breeding on then blocks in submitBatch until one is free
+            if (done == null && outstanding > 0 && (getEvaluations() >= end || inFlightBatches.availablePermits() == 0)) {
+                try {
+                    done = completed.take(); // nothing more may be sent out right now, wait for a batch
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for fitness evaluations", e);
+                }
+            }
+            if (done != null) {
+                outstanding--;
+                for (Individual child : awaitBatch(done)) {
+                    replaceWith(child);
+                    freeChildren.add(child);
+                }
+            } else {
+                // Breed a new batch; children whose genotype is in the fitness cache go straight in
+                List<Individual> batch = new ArrayList<>(evaluationBatchSize);
+                while (batch.size() < evaluationBatchSize && getEvaluations() + batch.size() < end) {
+                    Individual child1 = freeChildren.isEmpty() ? newChild() : freeChildren.poll();
+                    Individual child2 = freeChildren.isEmpty() ? newChild() : freeChildren.poll();
+                    breedPair(child1, child2);
+                    for (Individual child : new Individual[]{child1, child2}) {
+                        if (child.hasFitness() || servedFromCache(child)) {
+                            replaceWith(child);
+                            freeChildren.add(child);
+                        } else {
+                            batch.add(child);
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    CompletableFuture<List<Individual>> future = submitBatch(batch);
+                    outstanding++;
+                    future.whenComplete((children, failure) -> completed.add(future));
+                }
+            }
+            if (getEvaluations() >= nextTrace) {
+                recordTrace();
+                nextTrace += traceInterval;
+            }
+        }
+        recordTrace();
+        long elapsed = System.nanoTime() - start;
+        steadyStateEvaluationsPerSecond = elapsed == 0 ? 0 : (getEvaluations() - startEvaluations) * 1e9 / elapsed;
+    }
+
+    private Individual newChild() {
+        return new Individual(new long[Individual.wordCount(genotypeLength)], genotypeLength);
+    }
+
+    private void replaceWith(Individual child) {
+        if (!child.hasFitness()) {
+            child.setFitness(fitnessOf(child));
+        }
+        double fitness = child.getFitnessValue();
+        int victim = replacementPolicy == ReplacementPolicy.WORST ? replacementHeap.peekMin() : tournamentLoser();
+        population[victim].copyFrom(child);
+        replacementHeap.update(victim, fitness);
+        if (fitness > best.getFitnessValue()) {
+            best.copyFrom(child);
+        }
+    }
+
+    // Reverse tournament: the worst of replacementTournamentSize random individuals
+    private int tournamentLoser() {
+        int loser = random.nextInt(populationSize);
+        for (int i = 1; i < replacementTournamentSize; i++) {
+            int contender = random.nextInt(populationSize);
+            if (replacementHeap.key(contender) < replacementHeap.key(loser)) {
+                loser = contender;
+            }
+        }
+        return loser;
+    }
+
+    private void ensureReplacementHeap() {
+        if (replacementHeapValid) {
+            return;
+        }
+        if (replacementHeap == null) {
+            replacementHeap = new IndexedMinHeap(populationSize);
+            steadyChild1 = newChild();
+            steadyChild2 = newChild();
+        }
+        evaluateFitness();
+        rankPopulation();
+        replacementHeap.build(fitnessValues, populationSize);
+        replacementHeapValid = true;
+    }
+
+    private void recordTrace() {
+        traceEvaluations.add(getEvaluations());
+        traceBestFitness.add(best.getFitnessValue());
+    }
+
+    public void setReplacementPolicy(ReplacementPolicy replacementPolicy) {
+        this.replacementPolicy = replacementPolicy;
+    }
+
+    // Number of individuals in a TOURNAMENT_LOSER replacement tournament
+    public void setReplacementTournamentSize(int replacementTournamentSize) {
+        if (replacementTournamentSize < 1) {
+            throw new IllegalArgumentException("Tournament size must be positive: " + replacementTournamentSize);
+        }
+        this.replacementTournamentSize = replacementTournamentSize;
+    }
+
+    // Evaluation counts at which loopSteadyState recorded the best fitness so far, paired with getTraceBestFitness
+    public List<Long> getTraceEvaluations() {
+        return traceEvaluations;
+    }
+
+    public List<Double> getTraceBestFitness() {
+        return traceBestFitness;
+    }
+
+    // Throughput of the last loopSteadyState call
+    public double getSteadyStateEvaluationsPerSecond() {
+        return steadyStateEvaluationsPerSecond;
+    }
+
+    // Island migration: copies of our best individuals for another island
+    @Override
+    public List<Individual> emigrants(int count) {
+        evaluateFitness();
+        rankPopulation();
+        int k = Math.min(count, populationSize);
+        TopK.largest(fitnessValues, populationSize, k, order);
+        List<Individual> migrants = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            migrants.add(population[order[i]].copy());
+        }
+        return migrants;
+    }
+
+    // Island migration: arriving individuals replace our worst ones
+    @Override
+    public void immigrate(List<Individual> migrants) {
+        evaluateFitness();
+        rankPopulation();
+        int count = Math.min(migrants.size(), populationSize);
+        TopK.smallest(fitnessValues, populationSize, count, order);
+        for (int i = 0; i < count; i++) {
+            population[order[i]].copyFrom(migrants.get(i));
+        }
+        replacementHeapValid = false;
+    }
+
+    // Writes a checkpoint of the run every interval generations from now on, on a background thread
+    public void setCheckpointing(Path path, int interval) {
+        this.checkpointWriter = new CheckpointWriter(path, interval);
+    }
+
+    // Waits for the last background checkpoint write (if any) and stops the writer
+    private void finishCheckpointing() {
+        if (checkpointWriter == null) {
+            return;
+        }
+        try {
+            checkpointWriter.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing checkpoint failed", e);
+        } finally {
+            checkpointWriter = null;
+        }
+    }
+
+    // Snapshot of the current run. It records the seed the RNG streams (operators, mutation, diversity sampling)
+    // restarted from at the start of the current generation (see startGeneration), the current mutation probability
+    // and the best individual so far, so resuming from it continues exactly like this run does, and taking it
+    // doesn't change the run. Only when something outside the generation loop has drawn from the streams since
+    // (steady-state breeding, spawning islands) are they restarted here first. The diversity history is a report
+    // and isn't recorded.
+    public PopulationCheckpoint createCheckpoint() {
+        if (!streamsAtGenerationSeed) {
+            startGeneration();
+        }
+        long seed = generationSeed;
+        double[] fitness = new double[populationSize];
+        long[][] bits = new long[populationSize][];
+        for (int i = 0; i < populationSize; i++) {
+            fitness[i] = population[i].getFitnessValue();
+            bits[i] = population[i].getBits().clone();
+        }
+        double[] history = new double[bestFitnessHistory.size()];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = bestFitnessHistory.get(i);
+        }
+        return new PopulationCheckpoint(PopulationCheckpoint.KNAPSACK, generation, seed, instanceHash(), genotypeLength,
+                history, fitness, bits, null, mutation.getProbability(), best == null ? Double.NaN : best.getFitnessValue(),
+                best == null ? null : best.getBits().clone(), null);
+    }
+
+    // Continues an interrupted run: population, fitnesses, RNG streams, generation counter, fitness history,
+    // mutation probability and best individual are restored from the checkpoint (which must come from an EA with
+    // the same items and population size, and the same diversity tracking settings to continue exactly)
+    public void resumeFrom(Path path) throws IOException {
+        PopulationCheckpoint checkpoint = PopulationCheckpoint.read(path);
+        checkpoint.checkCompatible(PopulationCheckpoint.KNAPSACK, instanceHash(), genotypeLength);
+        if (checkpoint.populationSize() != populationSize) {
+            throw new IllegalArgumentException("Checkpoint population size " + checkpoint.populationSize()
+                    + " does not match " + populationSize);
+        }
+        loadPopulation(checkpoint);
+        generation = checkpoint.generation;
+        bestFitnessHistory.clear();
+        for (double fitness : checkpoint.history) {
+            bestFitnessHistory.add(fitness);
+        }
+        diversityHistory.clear(); // not checkpointed, starts again from the resumed generation
+        mutation.setProbability(checkpoint.mutationProbability);
+        if (checkpoint.hasBest()) {
+            best = new Individual(checkpoint.bestBits, genotypeLength);
+            best.setFitness(checkpoint.bestFitness);
+        }
+        reseed(checkpoint.rngSeed);
+    }
+
+    // Starts a new run from the population of an earlier one (same items); the population sizes may differ, any
+    // individuals beyond the checkpoint's population stay random
+    public void warmStart(Path path) throws IOException {
+        PopulationCheckpoint checkpoint = PopulationCheckpoint.read(path);
+        checkpoint.checkCompatible(PopulationCheckpoint.KNAPSACK, instanceHash(), genotypeLength);
+        loadPopulation(checkpoint);
+    }
+
+    private void loadPopulation(PopulationCheckpoint checkpoint) {
+        int count = Math.min(populationSize, checkpoint.populationSize());
+        for (int i = 0; i < count; i++) {
+            Individual individual = population[i];
+            System.arraycopy(checkpoint.bits[i], 0, individual.getBits(), 0, individual.getBits().length);
+            individual.clearTotals(); // recomputed in full on their next evaluation
+            individual.setFitness(checkpoint.fitness[i]);
+        }
+        best = null; // found again among the loaded individuals on their next ranking
+        replacementHeapValid = false;
+    }
+
+    // Every generation starts from a freshly drawn seed, whether or not a checkpoint is taken there: that way a
+    // checkpoint can record the RNG state without drawing from the streams, and a seeded run follows the same
+    // trajectory with checkpointing on or off, however long the writes take
+    private void startGeneration() {
+        reseed(random.nextLong());
+    }
+
+    private void reseed(long seed) {
+        generationSeed = seed;
+        streamsAtGenerationSeed = true;
+        random.reseed(seed);
+        mutation.reseed(random.nextLong());
+        diversitySeed = random.nextLong();
+        if (diversityTracker != null) {
+            diversityTracker.reseed(diversitySeed);
+        }
+    }
+
+    // Fingerprint of the knapsack items, so a checkpoint can't be resumed on a different instance
+    private long instanceHash() {
+        long hash = capacity;
+        for (int i = 0; i < genotypeLength; i++) {
+            hash = hash * 1_000_003L + values[i] * 31L + weights[i];
+        }
+        return hash;
+    }
+
     // Public getter for the final population (useful for testing/reporting)
+    // This is a view of the current buffer, its individuals are reused as evolution continues
     public List<Individual> getPopulation() {
-        return population;
+        return Arrays.asList(population);
     }
     
-    // Public getter for the best individual in the current population.
+    // Public getter for the best individual found so far, O(1) once anything has been evaluated
+    // This is the EA's own copy, it is overwritten in place when a better individual turns up
+    @Override
     public Individual getBestIndividual() {
-        evaluateFitness();
-        population.sort((a, b) -> Double.compare(b.getFitness(), a.getFitness()));
-        return population.get(0);
+        if (best == null) {
+            evaluateFitness();
+            rankPopulation();
+        }
+        return best;
+    }
+
+    // Copies the (evaluated) population's fitness into fitnessValues, keeps the best individual so far up to date
+    // and returns the index of the best individual of the current population
+    private int rankPopulation() {
+        for (int i = 0; i < populationSize; i++) {
+            fitnessValues[i] = population[i].getFitnessValue();
+        }
+        int bestIndex = TopK.argMax(fitnessValues, populationSize);
+        if (best == null) {
+            best = population[bestIndex].copy();
+        } else if (fitnessValues[bestIndex] > best.getFitnessValue()) {
+            best.copyFrom(population[bestIndex]);
+        }
+        return bestIndex;
+    }
+
+    // Number of best individuals carried over unchanged into each next generation (0, the default, turns elitism off)
+    public void setEliteCount(int eliteCount) {
+        if (eliteCount < 0 || eliteCount > populationSize) {
+            throw new IllegalArgumentException("Elite count must be between 0 and the population size: " + eliteCount);
+        }
+        this.eliteCount = eliteCount;
+    }
+
+    public void setCrossoverType(CrossoverType crossoverType) {
+        this.crossoverType = crossoverType;
+    }
+
+    // Serves fitness of previously seen genotypes from the given cache (null to turn caching off)
+    // Hashing a genotype costs about as much as the built-in incremental knapsack fitness, so this pays off for
+    // expensive fitness functions rather than for the default one
+    public void setFitnessCache(FitnessCache fitnessCache) {
+        this.fitnessCache = fitnessCache;
+    }
+
+    public FitnessCache getFitnessCache() {
+        return fitnessCache;
+    }
+
+    // Evaluates fitness with the given evaluator instead of the built-in knapsack fitness (null switches back)
+    // Individuals are sent in batches of batchSize, with at most maxInFlight batches out at the same time
+    public void setFitnessEvaluator(FitnessEvaluator<Individual> fitnessEvaluator, int batchSize, int maxInFlight) {
+        if (batchSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Batch size and in-flight limit must be positive: " + batchSize + ", " + maxInFlight);
+        }
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.evaluationBatchSize = batchSize;
+        this.inFlightBatches = new Semaphore(maxInFlight);
+    }
+
+    // Repairs every individual before it is evaluated, see repair(); sorts the items by ratio right away if needed
+    public void setRepair(boolean repair) {
+        if (repair) {
+            instance.ratioOrder();
+        }
+        this.repair = repair;
+    }
+
+    // Measures the population's diversity every generation, estimated from the given number of random pairs
+    // (0 turns it off, along with adaptive mutation). See getDiversityHistory.
+    public void setDiversityTracking(int samplePairs) {
+        if (samplePairs == 0) {
+            diversityTracker = null;
+            setAdaptiveMutation(0, 0);
+            return;
+        }
+        diversityTracker = new DiversityTracker(genotypeLength, samplePairs, new ReseedableRandom(diversitySeed));
+    }
+
+    // Raises the mutation probability while the normalized mean Hamming distance is below threshold (a random
+    // population is at about 0.5), so a converged run explores again instead of stagnating. Turns on diversity
+    // tracking with 32 sample pairs if it is off. A threshold of 0 turns adaptation off and restores the base rate.
+    public void setAdaptiveMutation(double threshold, double maxProbability) {
+        if (threshold > 0 && (maxProbability < mutationProbability || maxProbability > 1)) {
+            throw new IllegalArgumentException("Maximum mutation probability must be in [" + mutationProbability + ", 1]: " + maxProbability);
+        }
+        if (threshold > 0 && diversityTracker == null) {
+            setDiversityTracking(32);
+        }
+        this.adaptiveMutationThreshold = threshold;
+        this.adaptiveMutationMaximum = maxProbability;
+        if (threshold <= 0) {
+            mutation.setProbability(mutationProbability);
+        }
+    }
+
+    // Describes this EA's knapsack instance to EvaluationWorker processes, for use with an EvaluationFarm
+    // Genotypes travel as their packed words, 8 bytes per 64 items
+    public FarmProblem<Individual> farmProblem() {
+        ByteBuffer description = ByteBuffer.allocate(12 + 8 * genotypeLength);
+        description.putInt(genotypeLength);
+        description.putLong(capacity);
+        description.asIntBuffer().put(values).put(weights);
+        return new FarmProblem<>(FarmProblem.KNAPSACK, description.array(), 8 * Individual.wordCount(genotypeLength),
+                (individual, out) -> {
+                    for (long word : individual.getBits()) {
+                        out.putLong(word);
+                    }
+                });
+    }
+
+    // Debug mode: every evaluation recomputes the totals in full and fails if the incremental ones disagree
+    public void setVerifyIncrementalFitness(boolean verifyIncrementalFitness) {
+        this.verifyIncrementalFitness = verifyIncrementalFitness;
+    }
+
+    // Enables parallel fitness evaluation on the given pool for populations of at least parallelThreshold
+    // individuals. Pass null to go back to sequential evaluation.
+    public void setParallelEvaluation(ForkJoinPool pool, int parallelThreshold) {
+        this.evaluationPool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    @Override
+    public double getBestFitness() {
+        return getBestIndividual().getFitnessValue();
     }
 
     public double getValues(int i) {
@@ -308,10 +1349,39 @@ class EvolutionaryAlgorithm {
         return capacity;
     }
 
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public int getGeneration() {
+        return generation;
+    }
+
+    public KnapsackInstance getInstance() {
+        return instance;
+    }
+
     // Public getter for the fitness history (for plotting purposes).
     public List<Double> getFitnessHistory() {
         return bestFitnessHistory;
     }
+
+    // Diversity per generation, in step with getFitnessHistory() from when tracking was turned on
+    public List<DiversitySample> getDiversityHistory() {
+        return diversityHistory;
+    }
+
+    // Fraction of the current population that selects each item, computed in one pass over the population
+    public float[] getAlleleFrequencies() {
+        return DiversityTracker.alleleFrequencies(population, populationSize, genotypeLength);
+    }
+
+    // Current mutation probability, differs from the configured one while adaptive mutation has raised it
+    public double getMutationProbability() {
+        return mutation.getProbability();
+    }
 }
 
 public class Main {
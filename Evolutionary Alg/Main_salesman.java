@@ -1,82 +1,248 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
 
 // Class representing an individual TSP solution (a tour)
 class TSPIndividual {
     // The tour is represented as a permutation of city indices.
-    private List<Integer> tour;
-    private Double fitness; // Fitness = 1 / totalDistance
+    private final int[] tour;
+    private double fitness; // Fitness = 1 / totalDistance, NaN until computed (primitive so evaluation never allocates)
+    private double length = Double.NaN; // the totalDistance behind the fitness when it came from distances, else NaN
+    private boolean locallyOptimal; // local search ran to the end on this tour, see TourLocalSearch.finished()
 
     // Constructor: randomly generate a tour for a given number of cities.
-    public TSPIndividual(int numCities, Random random) {
-        tour = new ArrayList<>();
+    public TSPIndividual(int numCities, ReseedableRandom random) {
+        tour = new int[numCities];
         for (int i = 0; i < numCities; i++) {
-            tour.add(i);
+            tour[i] = i;
         }
-        Collections.shuffle(tour, random);
-        fitness = null;
+        // Fisher-Yates shuffle on the caller's stream.
+        for (int i = numCities - 1; i > 0; i--) {
+            swap(i, random.nextInt(i + 1));
+        }
+        fitness = Double.NaN;
     }
 
     // Copy constructor from a given tour.
+    public TSPIndividual(int[] tour) {
+        this.tour = tour.clone();
+        this.fitness = Double.NaN;
+    }
+
+    // Same from a list of city indices
     public TSPIndividual(List<Integer> tour) {
-        this.tour = new ArrayList<>(tour);
-        this.fitness = null;
+        this.tour = new int[tour.size()];
+        for (int i = 0; i < this.tour.length; i++) {
+            this.tour[i] = tour.get(i);
+        }
+        this.fitness = Double.NaN;
+    }
+
+    // Independent copy (tour and fitness), e.g. for migration to another thread
+    public TSPIndividual copy() {
+        TSPIndividual copy = new TSPIndividual(tour);
+        copy.fitness = fitness;
+        copy.length = length;
+        copy.locallyOptimal = locallyOptimal;
+        return copy;
     }
 
-    public List<Integer> getTour() {
+    // The tour itself, not a copy: crossover writes children straight into it
+    public int[] getTour() {
         return tour;
     }
 
+    // Returns null while the fitness is not computed yet; the EA itself uses the primitive accessors.
     public Double getFitness() {
-        return fitness;
+        return hasFitness() ? fitness : null;
     }
 
-    public void setFitness(Double fitness) {
+    // Fitness from elsewhere (an evaluator, the cache, a checkpoint): the length behind it is unknown
+    public void setFitness(double fitness) {
         this.fitness = fitness;
+        this.length = Double.NaN;
+    }
+
+    void setLength(double length) {
+        this.length = length;
+        this.fitness = 1.0 / length;
+    }
+
+    double getFitnessValue() {
+        return fitness;
+    }
+
+    boolean hasFitness() {
+        return !Double.isNaN(fitness);
+    }
+
+    void clearFitness() {
+        fitness = Double.NaN;
+        length = Double.NaN;
+    }
+
+    boolean isLocallyOptimal() {
+        return locallyOptimal;
+    }
+
+    // Whoever writes the tour in place (crossover, local search, a checkpoint) says whether it is still a local optimum
+    void setLocallyOptimal(boolean locallyOptimal) {
+        this.locallyOptimal = locallyOptimal;
+    }
+
+    // The tour was made shorter by gain in place (local search): the fitness follows when the length is known and
+    // updateLength is set, otherwise the tour has to be evaluated again
+    void shorten(double gain, boolean updateLength) {
+        if (updateLength && !Double.isNaN(length)) {
+            setLength(length - gain);
+        } else {
+            clearFitness();
+        }
     }
 
-    // Swap mutation: swap two random cities in the tour.
-    public void mutate(double mutationProbability, Random random) {
-        if(random.nextDouble() < mutationProbability) {
-            int i = random.nextInt(tour.size());
-            int j = random.nextInt(tour.size());
-            // Swap cities at index i and j.
-            Collections.swap(tour, i, j);
-            // Invalidate fitness (needs recalculation).
-            fitness = null;
+    // Overwrites this tour (and fitness) with another one of the same length, reusing our array.
+    void copyFrom(TSPIndividual other) {
+        System.arraycopy(other.tour, 0, tour, 0, tour.length);
+        fitness = other.fitness;
+        length = other.length;
+        locallyOptimal = other.locallyOptimal;
+    }
+
+    private void swap(int i, int j) {
+        int city = tour[i];
+        tour[i] = tour[j];
+        tour[j] = city;
+    }
+
+    // Mutation: with the engine's mutation probability, one move of the given type. With distances given and the
+    // length known, the fitness follows from the move's length delta (O(1)) instead of being cleared. The cities
+    // whose neighbours changed go into changes; without it the tour is no longer taken for a local optimum.
+    void mutate(MutationEngine engine, TourMutationType type, DistanceOracle distances, TourChanges changes) {
+        if (engine.fires()) {
+            boolean updateLength = distances != null && !Double.isNaN(length);
+            double delta = TourMutation.apply(type, tour, engine, updateLength ? distances : null, changes);
+            if (changes == null) {
+                locallyOptimal = false;
+            }
+            if (updateLength) {
+                setLength(length + delta);
+            } else {
+                clearFitness();
+            }
         }
     }
 }
 
 // Class representing the TSP Evolutionary Algorithm
-class TSPEvolutionaryAlgorithm2 {
+class TSPEvolutionaryAlgorithm2 implements Island<TSPIndividual> {
+    private static final int PRINT_LIMIT = 100; // cities beyond which coordinates and tours aren't printed in full
+
     private int populationSize;
     private int numCities;
     private double crossoverProbability;
     private double mutationProbability;
     private int generations;
-    private List<TSPIndividual> population;
-    private Random random;
+    private final ReseedableRandom random; // this EA's own stream, used by one thread only
+    private MutationEngine mutation;
+
+    // Two preallocated population buffers that swap every generation: offspring are bred in place into the
+    // individuals of the next buffer, so the steady-state generation loop does not allocate
+    private TSPIndividual[] population;
+    private TSPIndividual[] offspring;
+    private TSPIndividual spare; // absorbs the extra child when the population size is odd
+    private int[] parents; // indices of the selected breeders in population, parents[i] and parents[i + 1] breed children i and i + 1
+    private double[] fitnessValues; // fitness of population[i], filled once per generation for partial selection
+    private int[] order; // scratch index array for TopK
+
+    private int eliteCount = 0; // best tours copied unchanged into the next generation
+    private TourCrossoverType crossoverType = TourCrossoverType.ORDER;
+    private TourCrossover tourCrossover; // this EA's crossover scratch state
+    private TourMutationType mutationType = TourMutationType.SWAP;
+    private boolean deltaEvaluation = true; // mutated tours keep their fitness, updated from the length delta
+    private TourLocalSearch localSearch; // memetic stage applied to every offspring (null means off)
+    private long localSearchBudgetNanos; // per offspring, 0 for none
+    private TourChanges changes1; // cities whose neighbours crossover and mutation changed in child1, for local search
+    private TourChanges changes2; // same for child2
+    private TSPIndividual best; // copy of the best tour seen so far, null before the first evaluation
+    private int generation; // number of completed generations
+    private long generationSeed; // the RNG streams restarted from this at the start of the current generation
+    private boolean streamsAtGenerationSeed; // false once something outside the generation loop drew from them
+
+    // Optional memo of already evaluated tours (null means off)
+    private FitnessCache fitnessCache;
+
+    // Number of fitness evaluations so far, cache hits included
+    private final LongAdder evaluations = new LongAdder();
+
+    // Optional external fitness function replacing 1 / distance (null means off), see setFitnessEvaluator
+    private FitnessEvaluator<TSPIndividual> fitnessEvaluator;
+    private int evaluationBatchSize;
+    private Semaphore inFlightBatches; // one permit per batch that may be out for evaluation at the same time
 
-    // Coordinates for cities (placed evenly on a unit circle)
+    // Optional background checkpointing (null means off)
+    private CheckpointWriter checkpointWriter;
+
+    // Coordinates for cities (placed evenly on a unit circle, or loaded from a TSPInstance)
     private double[] cityX;
     private double[] cityY;
+    private DistanceOracle distances; // matrix, row cache or direct, depending on the number of cities and the heap
+    private double optimalLength = Double.NaN; // length of the loaded instance's optimal tour, NaN when unknown
 
     // Flag to choose selection method: true for tournament, false for roulette.
     private boolean useTournament = true; 
 
     public TSPEvolutionaryAlgorithm2(int populationSize, int numCities, double crossoverProbability, double mutationProbability, int generations) {
+        this(populationSize, numCities, crossoverProbability, mutationProbability, generations, new SplittableRandom().nextLong());
+    }
+
+    // Same as above, but all randomness (cities, population, operators) is derived from the given seed.
+    public TSPEvolutionaryAlgorithm2(int populationSize, int numCities, double crossoverProbability, double mutationProbability, int generations, long seed) {
         this.populationSize = populationSize;
         this.numCities = numCities;
         this.crossoverProbability = crossoverProbability;
         this.mutationProbability = mutationProbability;
         this.generations = generations;
-        this.random = new Random();
+        this.random = new ReseedableRandom(seed);
+        this.mutation = new MutationEngine(mutationProbability, random.split());
         initializeCities();  // Generate coordinates for cities.
-        this.population = initializePopulation();
+        distances = DistanceOracle.forCities(cityX, cityY);
+        initializePopulation();
+        startGeneration();
+    }
+
+    public TSPEvolutionaryAlgorithm2(int populationSize, TSPInstance instance, double crossoverProbability, double mutationProbability, int generations) {
+        this(populationSize, instance, crossoverProbability, mutationProbability, generations, new SplittableRandom().nextLong());
+    }
+
+    // Runs on a loaded instance (a TSPLIB instance or route file, see TSPInstance) instead of generated cities.
+    // Distances follow the instance's metric, and when it comes with an optimal tour the reports include the gap.
+    public TSPEvolutionaryAlgorithm2(int populationSize, TSPInstance instance, double crossoverProbability, double mutationProbability, int generations, long seed) {
+        this.populationSize = populationSize;
+        this.numCities = instance.cities();
+        this.crossoverProbability = crossoverProbability;
+        this.mutationProbability = mutationProbability;
+        this.generations = generations;
+        this.random = new ReseedableRandom(seed);
+        this.mutation = new MutationEngine(mutationProbability, random.split());
+        cityX = instance.x;
+        cityY = instance.y;
+        distances = DistanceOracle.forCities(cityX, cityY, instance.metric);
+        optimalLength = instance.optimalLength(distances);
+        System.out.println("Instance " + instance.name + ": " + numCities + " cities, " + instance.metric + " distances"
+                + (Double.isNaN(optimalLength) ? "" : ", optimal tour length " + optimalLength));
+        System.out.println();
+        initializePopulation();
+        startGeneration();
     }
 
     // Generate cities on a unit circle (evenly spaced)
@@ -90,60 +256,181 @@ class TSPEvolutionaryAlgorithm2 {
             cityY[i] = Math.sin(angle);
         }
         System.out.println("Cities (on unit circle):");
-        for (int i = 0; i < numCities; i++) {
+        for (int i = 0; i < Math.min(numCities, PRINT_LIMIT); i++) {
             System.out.printf("City %d: (%.3f, %.3f)%n", i, cityX[i], cityY[i]);
         }
+        if (numCities > PRINT_LIMIT) {
+            System.out.println("... and " + (numCities - PRINT_LIMIT) + " more");
+        }
         System.out.println();
     }
 
+    // Creates an island for IslandModel: same cities and parameters, but its own population and RNG
+    private TSPEvolutionaryAlgorithm2(TSPEvolutionaryAlgorithm2 source, int populationSize) {
+        this.populationSize = populationSize;
+        this.numCities = source.numCities;
+        this.crossoverProbability = source.crossoverProbability;
+        this.mutationProbability = source.mutationProbability;
+        this.generations = source.generations;
+        this.random = source.random.split();
+        this.mutation = new MutationEngine(mutationProbability, random.split());
+        this.cityX = source.cityX;
+        this.cityY = source.cityY;
+        this.distances = source.distances;
+        this.optimalLength = source.optimalLength;
+        this.useTournament = source.useTournament;
+        this.eliteCount = source.eliteCount;
+        this.crossoverType = source.crossoverType;
+        this.mutationType = source.mutationType;
+        this.deltaEvaluation = source.deltaEvaluation;
+        this.localSearch = source.localSearch == null ? null : source.localSearch.copy(); // shares the neighbour lists
+        this.localSearchBudgetNanos = source.localSearchBudgetNanos;
+        this.fitnessCache = source.fitnessCache; // thread-safe, so islands can share what they've seen
+        this.fitnessEvaluator = source.fitnessEvaluator;
+        this.evaluationBatchSize = source.evaluationBatchSize;
+        this.inFlightBatches = source.inFlightBatches; // the in-flight limit is for the evaluator, so it's shared too
+        initializePopulation();
+        startGeneration();
+    }
+
+    // Spawns a new island sharing this EA's cities (see IslandModel)
+    public TSPEvolutionaryAlgorithm2 createIsland(int populationSize) {
+        streamsAtGenerationSeed = false; // the island's stream is split off ours
+        return new TSPEvolutionaryAlgorithm2(this, populationSize);
+    }
+
     // Create initial population with random tours.
-    private List<TSPIndividual> initializePopulation() {
-        List<TSPIndividual> pop = new ArrayList<>();
+    private void initializePopulation() {
+        population = new TSPIndividual[populationSize];
+        offspring = new TSPIndividual[populationSize];
         for (int i = 0; i < populationSize; i++) {
-            pop.add(new TSPIndividual(numCities, random));
+            population[i] = new TSPIndividual(numCities, random);
+            offspring[i] = new TSPIndividual(numCities, random);
         }
-        return pop;
+        spare = new TSPIndividual(numCities, random);
+        tourCrossover = new TourCrossover(numCities);
+        changes1 = new TourChanges(numCities);
+        changes2 = new TourChanges(numCities);
+        parents = new int[populationSize + 1]; // room for a pair at every position, elites shift where breeding starts
+        fitnessValues = new double[populationSize];
+        order = new int[populationSize];
     }
 
     // Compute the total distance of a tour.
     private double computeDistance(TSPIndividual individual) {
-        List<Integer> tour = individual.getTour();
+        int[] tour = individual.getTour();
         double totalDist = 0.0;
-        for (int i = 0; i < tour.size() - 1; i++) {
-            int cityA = tour.get(i);
-            int cityB = tour.get(i + 1);
-            totalDist += distanceBetween(cityA, cityB);
+        for (int i = 0; i < tour.length - 1; i++) {
+            int cityA = tour[i];
+            int cityB = tour[i + 1];
+            totalDist += distances.distance(cityA, cityB);
         }
         // Add distance from last city back to first city.
-        totalDist += distanceBetween(tour.get(tour.size() - 1), tour.get(0));
+        totalDist += distances.distance(tour[tour.length - 1], tour[0]);
         return totalDist;
     }
 
-    // Euclidean distance between two cities.
-    private double distanceBetween(int cityA, int cityB) {
-        double dx = cityX[cityA] - cityX[cityB];
-        double dy = cityY[cityA] - cityY[cityB];
-        return Math.sqrt(dx * dx + dy * dy);
-    }
-
     // Evaluate fitness for each individual. Fitness is 1 / totalDistance.
     private void evaluateFitness() {
+        if (fitnessEvaluator != null) {
+            evaluateWithEvaluator();
+            return;
+        }
+        for (TSPIndividual individual : population) {
+            if (!individual.hasFitness()) {
+                evaluate(individual);
+            }
+        }
+    }
+
+    // Hands the unevaluated tours to the fitness evaluator in batches, as many at once as the in-flight limit
+    // allows (further submissions block until a batch is back), and waits until all of them are evaluated.
+    private void evaluateWithEvaluator() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        List<TSPIndividual> batch = new ArrayList<>(evaluationBatchSize);
         for (TSPIndividual individual : population) {
-            if (individual.getFitness() == null) {
-                double totalDistance = computeDistance(individual);
-                // Avoid division by zero (should not happen with positive distances)
-                individual.setFitness(1.0 / totalDistance);
+            if (individual.hasFitness()) {
+                continue;
+            }
+            if (fitnessCache != null) {
+                double cached = fitnessCache.get(FitnessCache.hashTour(individual.getTour()), canonicalForCache(individual));
+                if (!Double.isNaN(cached)) {
+                    evaluations.increment();
+                    individual.setFitness(cached);
+                    continue;
+                }
+            }
+            batch.add(individual);
+            if (batch.size() == evaluationBatchSize) {
+                pending.add(submitBatch(batch));
+                batch = new ArrayList<>(evaluationBatchSize);
             }
         }
+        if (!batch.isEmpty()) {
+            pending.add(submitBatch(batch));
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Fitness evaluation failed", e.getCause());
+        }
+    }
+
+    private CompletableFuture<Void> submitBatch(List<TSPIndividual> batch) {
+        inFlightBatches.acquireUninterruptibly();
+        evaluations.add(batch.size());
+        CompletableFuture<double[]> evaluation;
+        try {
+            evaluation = fitnessEvaluator.evaluate(batch);
+        } catch (RuntimeException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+        return evaluation.whenComplete((fitness, failure) -> inFlightBatches.release())
+                .thenAccept(fitness -> {
+                    if (fitness.length != batch.size()) {
+                        throw new IllegalStateException("Evaluator returned " + fitness.length + " values for a batch of " + batch.size());
+                    }
+                    for (int i = 0; i < fitness.length; i++) {
+                        TSPIndividual individual = batch.get(i);
+                        individual.setFitness(fitness[i]);
+                        if (fitnessCache != null) {
+                            fitnessCache.put(FitnessCache.hashTour(individual.getTour()), canonicalForCache(individual), fitness[i]);
+                        }
+                    }
+                });
+    }
+
+    private int[] canonicalForCache(TSPIndividual individual) {
+        return fitnessCache.isVerifying() ? FitnessCache.canonicalTour(individual.getTour()) : null;
+    }
+
+    // Fitness of one tour (1 / totalDistance), served from the fitness cache when one is configured.
+    private void evaluate(TSPIndividual individual) {
+        evaluations.increment();
+        if (fitnessCache == null) {
+            individual.setLength(computeDistance(individual));
+            return;
+        }
+        int[] tour = individual.getTour();
+        long hash = FitnessCache.hashTour(tour);
+        int[] canonical = fitnessCache.isVerifying() ? FitnessCache.canonicalTour(tour) : null;
+        double cached = fitnessCache.get(hash, canonical);
+        if (!Double.isNaN(cached)) {
+            individual.setFitness(cached);
+            return;
+        }
+        individual.setLength(computeDistance(individual));
+        fitnessCache.put(hash, canonical, individual.getFitnessValue());
     }
 
     // Tournament selection: choose the best individual from a random subset.
-    private TSPIndividual tournamentSelection() {
+    private int tournamentSelection() {
         int tournamentSize = 5; // Adjust tournament size as needed.
-        TSPIndividual best = null;
+        int best = -1;
         for (int i = 0; i < tournamentSize; i++) {
-            TSPIndividual contender = population.get(random.nextInt(populationSize));
-            if (best == null || contender.getFitness() > best.getFitness()) {
+            int contender = random.nextInt(populationSize);
+            if (best == -1 || population[contender].getFitnessValue() > population[best].getFitnessValue()) {
                 best = contender;
             }
         }
@@ -151,25 +438,25 @@ class TSPEvolutionaryAlgorithm2 {
     }
 
     // Roulette wheel selection: choose an individual with probability proportional to fitness.
-    private TSPIndividual rouletteSelection() {
+    private int rouletteSelection() {
         double totalFitness = 0.0;
         for (TSPIndividual ind : population) {
-            totalFitness += ind.getFitness();
+            totalFitness += ind.getFitnessValue();
         }
         double slice = random.nextDouble() * totalFitness;
         double sum = 0.0;
-        for (TSPIndividual ind : population) {
-            sum += ind.getFitness();
+        for (int i = 0; i < populationSize; i++) {
+            sum += population[i].getFitnessValue();
             if (sum >= slice) {
-                return ind;
+                return i;
             }
         }
         // Fallback (should not happen)
-        return population.get(population.size() - 1);
+        return populationSize - 1;
     }
 
     // Parent selection method: choose one individual using the specified method.
-    private TSPIndividual selectParent() {
+    private int selectParent() {
         if (useTournament) {
             return tournamentSelection();
         } else {
@@ -177,67 +464,78 @@ class TSPEvolutionaryAlgorithm2 {
         }
     }
 
-    // Order Crossover (OX)
-    private List<TSPIndividual> crossover(TSPIndividual parent1, TSPIndividual parent2) {
-        // Choose two random cut points.
-        int cut1 = random.nextInt(numCities);
-        int cut2 = random.nextInt(numCities);
-        if (cut1 > cut2) {
-            int temp = cut1;
-            cut1 = cut2;
-            cut2 = temp;
-        }
-        // Create two children.
-        List<Integer> child1 = new ArrayList<>(Collections.nCopies(numCities, -1));
-        List<Integer> child2 = new ArrayList<>(Collections.nCopies(numCities, -1));
-        
-        // Copy the slice from parent1 to child1 and from parent2 to child2.
-        for (int i = cut1; i <= cut2; i++) {
-            child1.set(i, parent1.getTour().get(i));
-            child2.set(i, parent2.getTour().get(i));
-        }
-        
-        // Fill in the remaining positions for child1 using parent2's order.
-        int currentPos = (cut2 + 1) % numCities;
-        for (int i = 0; i < numCities; i++) {
-            int index = (cut2 + 1 + i) % numCities;
-            int candidate = parent2.getTour().get(index);
-            if (!child1.contains(candidate)) {
-                child1.set(currentPos, candidate);
-                currentPos = (currentPos + 1) % numCities;
+    // Crossover of the configured type (Order Crossover unless set otherwise), O(n) per pair of children
+    // The children are written in place into the two given (preallocated) individuals.
+    private void crossover(TSPIndividual parent1, TSPIndividual parent2, TSPIndividual offspring1, TSPIndividual offspring2) {
+        int[] child1 = offspring1.getTour();
+        int[] child2 = offspring2.getTour();
+        TourChanges record1 = localSearch == null ? null : changes1;
+        TourChanges record2 = localSearch == null ? null : changes2;
+        if (crossoverType == TourCrossoverType.CYCLE) {
+            tourCrossover.cycle(parent1.getTour(), parent2.getTour(), child1, child2, record1, record2);
+        } else {
+            // Choose two random cut points.
+            int cut1 = random.nextInt(numCities);
+            int cut2 = random.nextInt(numCities);
+            if (cut1 > cut2) {
+                int temp = cut1;
+                cut1 = cut2;
+                cut2 = temp;
             }
-        }
-        
-        // Fill in the remaining positions for child2 using parent1's order.
-        currentPos = (cut2 + 1) % numCities;
-        for (int i = 0; i < numCities; i++) {
-            int index = (cut2 + 1 + i) % numCities;
-            int candidate = parent1.getTour().get(index);
-            if (!child2.contains(candidate)) {
-                child2.set(currentPos, candidate);
-                currentPos = (currentPos + 1) % numCities;
+            if (crossoverType == TourCrossoverType.ORDER) {
+                tourCrossover.order(parent1.getTour(), parent2.getTour(), child1, child2, cut1, cut2, record1, record2);
+            } else {
+                tourCrossover.partiallyMapped(parent1.getTour(), parent2.getTour(), child1, child2, cut1, cut2, record1, record2);
             }
         }
-        
-        List<TSPIndividual> children = new ArrayList<>();
-        children.add(new TSPIndividual(child1));
-        children.add(new TSPIndividual(child2));
-        return children;
+        offspring1.clearFitness();
+        offspring2.clearFitness();
+        // every edge the recorded cities don't touch comes from one of the parents
+        boolean locallyOptimal = parent1.isLocallyOptimal() && parent2.isLocallyOptimal();
+        offspring1.setLocallyOptimal(locallyOptimal);
+        offspring2.setLocallyOptimal(locallyOptimal);
     }
 
-    // Mutation: Swap mutation
-    private void mutate(TSPIndividual individual) {
-        individual.mutate(mutationProbability, random);
+    // Mutation of the configured type; with an external evaluator the fitness isn't 1 / length, so no deltas
+    private void mutate(TSPIndividual individual, TourChanges changes) {
+        individual.mutate(mutation, mutationType, fitnessEvaluator == null && deltaEvaluation ? distances : null,
+                localSearch == null ? null : changes);
+    }
+
+    // Memetic stage: local search on a new offspring, whose fitness then follows the gain like a mutation's delta.
+    // An offspring of locally optimal parents only needs a look at the cities crossover and mutation reconnected,
+    // and an unchanged copy of a locally optimal parent none at all; anything else gets a full sweep.
+    private void improve(TSPIndividual individual, TourChanges changes) {
+        if (localSearch == null) {
+            return;
+        }
+        double gain;
+        if (!individual.isLocallyOptimal()) {
+            gain = localSearch.improve(individual.getTour(), localSearchBudgetNanos);
+        } else if (!changes.isEmpty()) {
+            gain = localSearch.improve(individual.getTour(), changes, localSearchBudgetNanos);
+        } else {
+            return;
+        }
+        individual.setLocallyOptimal(localSearch.finished());
+        if (gain > 0) {
+            individual.shorten(gain, fitnessEvaluator == null && deltaEvaluation);
+        }
     }
 
     // Print details of the best individual.
-    private void printBestIndividualInfo(int generation) {
-        TSPIndividual best = population.get(0);
+    private void printBestIndividualInfo(int generation, TSPIndividual best) {
         double totalDistance = computeDistance(best);
         System.out.println("Generation " + generation + " Best Distance = " + totalDistance + " (Fitness = " + best.getFitness() + ")");
+        if (!Double.isNaN(optimalLength)) {
+            System.out.println("Gap to optimum = " + String.format("%.2f%%", 100 * (totalDistance - optimalLength) / optimalLength));
+        }
         System.out.print("Tour: ");
-        for (Integer city : best.getTour()) {
-            System.out.print(city + " ");
+        for (int i = 0; i < Math.min(numCities, PRINT_LIMIT); i++) {
+            System.out.print(best.getTour()[i] + " ");
+        }
+        if (numCities > PRINT_LIMIT) {
+            System.out.print("... (" + numCities + " cities)");
         }
         System.out.println();
         System.out.println("------------------------------");
@@ -245,62 +543,363 @@ class TSPEvolutionaryAlgorithm2 {
 
     // Main evolution loop.
     public void loop() {
-        for (int generation = 0; generation < generations; generation++) {
+        // Starts at 0, or wherever a resumed checkpoint left off.
+        while (generation < generations) {
             evaluateFitness();
-            // Sort population by fitness (highest first).
-            population.sort((a, b) -> Double.compare(b.getFitness(), a.getFitness()));
+            int bestIndex = rankPopulation();
 
             // Print every 20 generations and at generation 0 and final generation.
             if (generation == 0 || generation % 20 == 0 || generation == generations - 1) {
-                printBestIndividualInfo(generation);
+                printBestIndividualInfo(generation, population[bestIndex]);
+            }
+
+            breed();
+
+            if (checkpointWriter != null && checkpointWriter.isDue(generation)) {
+                checkpointWriter.submit(createCheckpoint());
+            }
+        }
+        finishCheckpointing();
+        evaluateFitness();
+        rankPopulation();
+        printBestIndividualInfo(generations, best);
+    }
+
+    // Runs a single generation: evaluates the current population, then replaces it with its offspring
+    @Override
+    public void step() {
+        evaluateFitness();
+        rankPopulation();
+        breed();
+    }
+
+    // Builds the next generation from the current population, evaluated and ranked by rankPopulation().
+    private void breed() {
+        // Elitism: the best tours go into the next generation unchanged (fitness included), so they are neither
+        // mutated nor evaluated again. They are picked out by partial selection, the population is never sorted.
+        int elites = Math.min(eliteCount, populationSize);
+        if (elites > 0) {
+            TopK.largest(fitnessValues, populationSize, elites, order);
+            for (int i = 0; i < elites; i++) {
+                offspring[i].copyFrom(population[order[i]]);
             }
+        }
+
+        // Select parents as indices into the current population, one pair per two places left.
+        int breedersEnd = elites + ((populationSize - elites + 1) & ~1);
+        for (int i = elites; i < breedersEnd; i++) {
+            parents[i] = selectParent();
+        }
 
-            // Build a breeding pool.
-            List<TSPIndividual> breedingPool = new LinkedList<>();
-            while (breedingPool.size() < populationSize) {
-                breedingPool.add(selectParent());
+        // Breed the rest of the next generation in place into the offspring buffer.
+        // For an odd number of places left the last second child lands in the spare individual and is dropped.
+        for (int i = elites; i < populationSize; i += 2) {
+            TSPIndividual parent1 = population[parents[i]];
+            TSPIndividual parent2 = population[parents[i + 1]];
+            TSPIndividual child1 = offspring[i];
+            TSPIndividual child2 = i + 1 < populationSize ? offspring[i + 1] : spare;
+            changes1.clear();
+            changes2.clear();
+            if (random.nextDouble() < crossoverProbability) {
+                crossover(parent1, parent2, child1, child2);
+            } else {
+                // No crossover; copy parents.
+                child1.copyFrom(parent1);
+                child2.copyFrom(parent2);
             }
+            mutate(child1, changes1);
+            mutate(child2, changes2);
+            improve(child1, changes1);
+            if (child2 != spare) {
+                improve(child2, changes2);
+            }
+        }
+
+        // The old population becomes the next offspring buffer.
+        TSPIndividual[] previous = population;
+        population = offspring;
+        offspring = previous;
+        generation++;
+        startGeneration();
+    }
+
+    public void setCrossoverType(TourCrossoverType crossoverType) {
+        this.crossoverType = crossoverType;
+    }
+
+    public void setMutationType(TourMutationType mutationType) {
+        this.mutationType = mutationType;
+    }
+
+    // Memetic stage: every offspring is improved by 2-opt and Or-opt moves towards each city's nearest neighbours
+    // (first improvement, with don't-look bits) until no move helps or budgetPerIndividual is used up
+    // (Duration.ZERO for no limit); neighbors = 0 turns it off. A budget that runs out makes runs depend on the
+    // speed of the machine, so leave it unlimited for reproducible runs.
+    public void setLocalSearch(int neighbors, Duration budgetPerIndividual) {
+        if (neighbors < 0 || budgetPerIndividual.isNegative()) {
+            throw new IllegalArgumentException("Neighbour count and budget must not be negative: " + neighbors + ", " + budgetPerIndividual);
+        }
+        this.localSearch = neighbors == 0 ? null : new TourLocalSearch(distances, neighbors);
+        this.localSearchBudgetNanos = budgetPerIndividual.toNanos();
+    }
+
+    // Whether mutated tours get their fitness from the length delta of the move (the default) or are evaluated
+    // again in full. Deltas can differ from a full evaluation in the last bits, so turn them off to reproduce a
+    // run that used an external evaluator (e.g. an EvaluationFarm) exactly.
+    public void setDeltaEvaluation(boolean deltaEvaluation) {
+        this.deltaEvaluation = deltaEvaluation;
+    }
+
+    // Serves fitness of previously seen tours (in any rotation or direction) from the given cache, null turns it off.
+    public void setFitnessCache(FitnessCache fitnessCache) {
+        this.fitnessCache = fitnessCache;
+    }
+
+    public FitnessCache getFitnessCache() {
+        return fitnessCache;
+    }
+
+    // Evaluates fitness with the given evaluator instead of 1 / distance (null switches back).
+    // Tours are sent in batches of batchSize, with at most maxInFlight batches out at the same time.
+    public void setFitnessEvaluator(FitnessEvaluator<TSPIndividual> fitnessEvaluator, int batchSize, int maxInFlight) {
+        if (batchSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Batch size and in-flight limit must be positive: " + batchSize + ", " + maxInFlight);
+        }
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.evaluationBatchSize = batchSize;
+        this.inFlightBatches = new Semaphore(maxInFlight);
+    }
 
-            // Create next generation.
-            List<TSPIndividual> nextGeneration = new ArrayList<>();
-            while (nextGeneration.size() < populationSize) {
-                TSPIndividual parent1 = breedingPool.remove(0);
-                TSPIndividual parent2 = breedingPool.remove(0);
-                List<TSPIndividual> offspring;
-                if (random.nextDouble() < crossoverProbability) {
-                    offspring = crossover(parent1, parent2);
+    // Describes this EA's cities to EvaluationWorker processes, for use with an EvaluationFarm.
+    // Tours travel as their city indices, 2 bytes each for up to 65536 cities.
+    public FarmProblem<TSPIndividual> farmProblem() {
+        ByteBuffer description = ByteBuffer.allocate(8 + 16 * numCities);
+        description.putInt(numCities);
+        description.putInt(distances.metric.ordinal());
+        description.asDoubleBuffer().put(cityX).put(cityY);
+        int cityBytes = FarmProblem.cityBytes(numCities);
+        return new FarmProblem<>(FarmProblem.TSP, description.array(), cityBytes * numCities, (individual, out) -> {
+            for (int city : individual.getTour()) {
+                if (cityBytes == 2) {
+                    out.putShort((short) city);
                 } else {
-                    // No crossover; copy parents.
-                    offspring = new ArrayList<>();
-                    offspring.add(new TSPIndividual(parent1.getTour()));
-                    offspring.add(new TSPIndividual(parent2.getTour()));
-                }
-                for (TSPIndividual child : offspring) {
-                    mutate(child);
-                    nextGeneration.add(child);
-                    if (nextGeneration.size() >= populationSize) {
-                        break;
-                    }
+                    out.putInt(city);
                 }
             }
-            population = nextGeneration;
+        });
+    }
+
+    // Writes a checkpoint of the run every interval generations from now on, on a background thread.
+    public void setCheckpointing(Path path, int interval) {
+        this.checkpointWriter = new CheckpointWriter(path, interval);
+    }
+
+    // Waits for the last background checkpoint write (if any) and stops the writer.
+    private void finishCheckpointing() {
+        if (checkpointWriter == null) {
+            return;
+        }
+        try {
+            checkpointWriter.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing checkpoint failed", e);
+        } finally {
+            checkpointWriter = null;
+        }
+    }
+
+    // Snapshot of the current run. It records the seed the RNG streams restarted from at the start of the current
+    // generation (see startGeneration), the mutation probability and the best tour so far, so resuming from it
+    // continues exactly like this run does, and taking it
+    // doesn't change the run. Only when something outside the generation loop has drawn from the streams since
+    // (steady-state breeding, spawning islands) are they restarted here first.
+    public PopulationCheckpoint createCheckpoint() {
+        if (!streamsAtGenerationSeed) {
+            startGeneration();
+        }
+        long seed = generationSeed;
+        double[] fitness = new double[populationSize];
+        int[][] tours = new int[populationSize][numCities];
+        for (int i = 0; i < populationSize; i++) {
+            fitness[i] = population[i].getFitnessValue();
+            System.arraycopy(population[i].getTour(), 0, tours[i], 0, numCities);
+        }
+        return new PopulationCheckpoint(PopulationCheckpoint.TSP, generation, seed, instanceHash(), numCities,
+                new double[0], fitness, null, tours, mutation.getProbability(),
+                best == null ? Double.NaN : best.getFitnessValue(), null, best == null ? null : best.getTour().clone());
+    }
+
+    // Continues an interrupted run: population, fitnesses, RNG streams, generation counter, mutation probability
+    // and best tour are restored from the checkpoint (which must come from an EA with the same cities and
+    // population size).
+    public void resumeFrom(Path path) throws IOException {
+        PopulationCheckpoint checkpoint = PopulationCheckpoint.read(path);
+        checkpoint.checkCompatible(PopulationCheckpoint.TSP, instanceHash(), numCities);
+        if (checkpoint.populationSize() != populationSize) {
+            throw new IllegalArgumentException("Checkpoint population size " + checkpoint.populationSize()
+                    + " does not match " + populationSize);
+        }
+        loadPopulation(checkpoint);
+        generation = checkpoint.generation;
+        mutation.setProbability(checkpoint.mutationProbability);
+        if (checkpoint.hasBest()) {
+            best = new TSPIndividual(checkpoint.bestTour);
+            best.setFitness(checkpoint.bestFitness);
         }
+        reseed(checkpoint.rngSeed);
+    }
+
+    // Starts a new run from the population of an earlier one (same cities); the population sizes may differ, any
+    // individuals beyond the checkpoint's population stay random.
+    public void warmStart(Path path) throws IOException {
+        PopulationCheckpoint checkpoint = PopulationCheckpoint.read(path);
+        checkpoint.checkCompatible(PopulationCheckpoint.TSP, instanceHash(), numCities);
+        loadPopulation(checkpoint);
+    }
+
+    private void loadPopulation(PopulationCheckpoint checkpoint) {
+        int count = Math.min(populationSize, checkpoint.populationSize());
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(checkpoint.tours[i], 0, population[i].getTour(), 0, numCities);
+            population[i].setFitness(checkpoint.fitness[i]);
+            population[i].setLocallyOptimal(false);
+        }
+        best = null; // found again among the loaded tours on their next ranking
+    }
+
+    // Every generation starts from a freshly drawn seed, whether or not a checkpoint is taken there: that way a
+    // checkpoint can record the RNG state without drawing from the streams, and a seeded run follows the same
+    // trajectory with checkpointing on or off, however long the writes take
+    private void startGeneration() {
+        reseed(random.nextLong());
+    }
+
+    private void reseed(long seed) {
+        generationSeed = seed;
+        streamsAtGenerationSeed = true;
+        random.reseed(seed);
+        mutation.reseed(random.nextLong());
+    }
+
+    // Fingerprint of the city coordinates and metric, so a checkpoint can't be resumed on a different instance.
+    // Euclidean instances hash like they did before there were other metrics.
+    private long instanceHash() {
+        long hash = numCities + ((long) distances.metric.ordinal() << 32);
+        for (int i = 0; i < numCities; i++) {
+            hash = hash * 1_000_003L + Double.doubleToLongBits(cityX[i]) * 31L + Double.doubleToLongBits(cityY[i]);
+        }
+        return hash;
+    }
+
+    // Island migration: copies of our best individuals for another island
+    @Override
+    public List<TSPIndividual> emigrants(int count) {
+        evaluateFitness();
+        rankPopulation();
+        int k = Math.min(count, populationSize);
+        TopK.largest(fitnessValues, populationSize, k, order);
+        List<TSPIndividual> migrants = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            migrants.add(population[order[i]].copy());
+        }
+        return migrants;
+    }
+
+    // Island migration: arriving individuals replace our worst ones
+    @Override
+    public void immigrate(List<TSPIndividual> migrants) {
         evaluateFitness();
-        population.sort((a, b) -> Double.compare(b.getFitness(), a.getFitness()));
-        printBestIndividualInfo(generations);
+        rankPopulation();
+        int count = Math.min(migrants.size(), populationSize);
+        TopK.smallest(fitnessValues, populationSize, count, order);
+        for (int i = 0; i < count; i++) {
+            population[order[i]].copyFrom(migrants.get(i));
+        }
+    }
+
+    // Best tour found so far, O(1) once anything has been evaluated.
+    // This is the EA's own copy, it is overwritten in place when a better tour turns up.
+    @Override
+    public TSPIndividual getBestIndividual() {
+        if (best == null) {
+            evaluateFitness();
+            rankPopulation();
+        }
+        return best;
+    }
+
+    // Relative gap of the best tour so far to the loaded instance's optimal tour, (best - optimal) / optimal, or NaN
+    // when the optimum isn't known
+    public double optimalityGap() {
+        if (Double.isNaN(optimalLength)) {
+            return Double.NaN;
+        }
+        return (computeDistance(getBestIndividual()) - optimalLength) / optimalLength;
+    }
+
+    // Copies the (evaluated) population's fitness into fitnessValues, keeps the best tour so far up to date
+    // and returns the index of the best tour of the current population.
+    private int rankPopulation() {
+        for (int i = 0; i < populationSize; i++) {
+            fitnessValues[i] = population[i].getFitnessValue();
+        }
+        int bestIndex = TopK.argMax(fitnessValues, populationSize);
+        if (best == null) {
+            best = population[bestIndex].copy();
+        } else if (fitnessValues[bestIndex] > best.getFitnessValue()) {
+            best.copyFrom(population[bestIndex]);
+        }
+        return bestIndex;
+    }
+
+    // Number of best tours carried over unchanged into each next generation (0, the default, turns elitism off).
+    public void setEliteCount(int eliteCount) {
+        if (eliteCount < 0 || eliteCount > populationSize) {
+            throw new IllegalArgumentException("Elite count must be between 0 and the population size: " + eliteCount);
+        }
+        this.eliteCount = eliteCount;
+    }
+
+    @Override
+    public double getBestFitness() {
+        return getBestIndividual().getFitnessValue();
+    }
+
+    @Override
+    public int getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+}
+
+// Creates this file's TSP EA for code that builds with either TSP variant (EABenchmark); Main_salesman_GUI.java
+// defines the same class for its EA, just like both define TSPIndividual
+class TSPVariant {
+    static Island<TSPIndividual> create(int populationSize, int numCities, double crossoverProbability, double mutationProbability, int generations, long seed) {
+        return new TSPEvolutionaryAlgorithm2(populationSize, numCities, crossoverProbability, mutationProbability, generations, seed);
     }
 }
 
 public class Main_salesman {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // You can adjust these parameters for testing.
-        TSPEvolutionaryAlgorithm2 ea = new TSPEvolutionaryAlgorithm2(
-            100,       // Population size
-            10,        // Number of cities
-            0.8,       // Crossover probability
-            0.1,       // Mutation probability
-            100        // Number of generations
-        );
+        TSPEvolutionaryAlgorithm2 ea;
+        if (args.length > 0) {
+            // A TSPLIB instance or route file (see TSPInstance) instead of cities on the unit circle
+            ea = new TSPEvolutionaryAlgorithm2(100, TSPInstance.load(Path.of(args[0])), 0.8, 0.1, 100);
+        } else {
+            ea = new TSPEvolutionaryAlgorithm2(
+                100,       // Population size
+                10,        // Number of cities
+                0.8,       // Crossover probability
+                0.1,       // Mutation probability
+                100        // Number of generations
+            );
+        }
         ea.loop();
     }
 }
@@ -0,0 +1,131 @@
+// Per-gene mutation without one random draw per gene
+// With mutation probability p, the gap between two consecutive mutated genes is geometrically distributed, so
+// instead of rolling a die for each of n genes we sample the gaps directly: about n * p draws instead of n.
+// Each engine owns a ReseedableRandom stream and belongs to one thread; split() hands out an independent engine
+// for another thread or island, and reseed() restarts the stream in place, so no RNG is ever created inside the
+// operators or per generation.
+class MutationEngine {
+    private final ReseedableRandom random;
+    private double probability;
+    private double logComplement; // ln(1 - p), cached for the gap sampling
+
+    public MutationEngine(double probability, ReseedableRandom random) {
+        this.random = random;
+        setProbability(probability);
+    }
+
+    public MutationEngine(double probability, long seed) {
+        this(probability, new ReseedableRandom(seed));
+    }
+
+    // Restarts the stream from the given seed, the probability stays as it is
+    public void reseed(long seed) {
+        random.reseed(seed);
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    public void setProbability(double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("Mutation probability must be in [0, 1]: " + probability);
+        }
+        this.probability = probability;
+        this.logComplement = Math.log1p(-probability);
+    }
+
+    // Position of the next gene to mutate at or after from, or length if no further gene mutates
+    // Typical use: for (int i = engine.nextSite(0, n); i < n; i = engine.nextSite(i + 1, n)) { mutate gene i }
+    public int nextSite(int from, int length) {
+        if (from >= length || probability == 0) {
+            return length;
+        }
+        if (probability == 1) {
+            return from;
+        }
+        // Inverse-CDF sampling of the number of untouched genes before the next mutation, u is in (0, 1]
+        double u = 1.0 - random.nextDouble();
+        double gap = Math.floor(Math.log(u) / logComplement);
+        return gap >= length - from ? length : from + (int) gap;
+    }
+
+    // A single Bernoulli trial with the mutation probability, for operators that mutate a whole individual at once
+    public boolean fires() {
+        return random.nextDouble() < probability;
+    }
+
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    // Independent engine with the same probability on a split-off stream, for use by another thread
+    public MutationEngine split() {
+        return new MutationEngine(probability, random.split());
+    }
+}
+
+// The SplitMix64 generator behind SplittableRandom, with a seed that can be set again in place
+// A stream seeded with s draws exactly what new SplittableRandom(s) would (nextLong, both nextInts, nextDouble), but
+// reseed() restarts it without allocating, for the streams the EAs restart every generation (see
+// EvolutionaryAlgorithm.startGeneration) and for the per-candidate and per-row streams of the samplers.
+// Not thread-safe, a stream belongs to one thread like the engine above.
+final class ReseedableRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long seed;
+
+    ReseedableRandom(long seed) {
+        this.seed = seed;
+    }
+
+    void reseed(long seed) {
+        this.seed = seed;
+    }
+
+    long nextLong() {
+        return mix64(seed += GOLDEN_GAMMA);
+    }
+
+    int nextInt() {
+        return mix32(seed += GOLDEN_GAMMA);
+    }
+
+    // Uniform in [0, bound), by rejection like SplittableRandom so there is no modulo bias
+    int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1) {
+            // rejected, draw again
+        }
+        return r;
+    }
+
+    // Uniform in [0, 1)
+    double nextDouble() {
+        return (mix64(seed += GOLDEN_GAMMA) >>> 11) * DOUBLE_UNIT;
+    }
+
+    // Independent stream seeded from this one, for another thread or island (setup only, it allocates)
+    ReseedableRandom split() {
+        return new ReseedableRandom(mix64(nextLong()));
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+        return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs many knapsack EA configurations concurrently and collects one row per trial into a single CSV file.
+//
+//   java ParameterSweep [--populations=100,500] [--items=20,40] [--crossover=0.8] [--mutation=0.1,0.2]
+//                       [--generations=200] [--seeds=1,2,3] [--repetitions=5] [--threads=8]
+//                       [--out=sweep.csv] [--history]
+//
+// Without any grid option the six configurations of Test.main are swept. A trial is one configuration, one seed
+// and one repetition: the items come from the seed alone (so every configuration with the same seed solves the
+// same instance), the EA's random streams from the seed and the repetition. Trials share nothing but the
+// executor: each builds its own instance and EA, which print nothing, so results don't depend on thread timing.
+public class ParameterSweep {
+    private final List<SweepConfig> configs;
+    private final long[] seeds;
+    private final int repetitions;
+    private boolean recordHistory = false;
+
+    public ParameterSweep(List<SweepConfig> configs, long[] seeds, int repetitions) {
+        if (repetitions <= 0) {
+            throw new IllegalArgumentException("Repetitions must be positive: " + repetitions);
+        }
+        this.configs = configs;
+        this.seeds = seeds;
+        this.repetitions = repetitions;
+    }
+
+    // Every combination of the given parameter values
+    public static List<SweepConfig> grid(int[] populationSizes, int[] itemCounts, double[] crossoverProbabilities,
+                                         double[] mutationProbabilities, int[] generations) {
+        List<SweepConfig> grid = new ArrayList<>();
+        for (int populationSize : populationSizes) {
+            for (int items : itemCounts) {
+                for (double crossover : crossoverProbabilities) {
+                    for (double mutation : mutationProbabilities) {
+                        for (int generationCount : generations) {
+                            grid.add(new SweepConfig(populationSize, items, crossover, mutation, generationCount));
+                        }
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    // The configurations of Test A to F
+    public static List<SweepConfig> testConfigs() {
+        List<SweepConfig> configs = new ArrayList<>();
+        configs.add(new SweepConfig(100, 20, 0.8, 0.1, 100));
+        configs.add(new SweepConfig(100, 100, 0.8, 0.1, 100));
+        configs.add(new SweepConfig(500, 40, 0.8, 0.1, 200));
+        configs.add(new SweepConfig(1000, 40, 0.8, 0.1, 200));
+        configs.add(new SweepConfig(500, 40, 0.8, 0.2, 200));
+        configs.add(new SweepConfig(500, 40, 0.4, 0.4, 300));
+        return configs;
+    }
+
+    // Adds the best fitness per generation to every result (and a history column to the CSV)
+    public void setRecordHistory(boolean recordHistory) {
+        this.recordHistory = recordHistory;
+    }
+
+    public int trialCount() {
+        return configs.size() * seeds.length * repetitions;
+    }
+
+    // Runs all trials on a pool of the given number of threads and returns their results in trial order
+    // (config, then seed, then repetition), whatever order they finished in
+    public List<TrialResult> run(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sweep-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<TrialResult>> futures = new ArrayList<>(trialCount());
+            for (int c = 0; c < configs.size(); c++) {
+                for (long seed : seeds) {
+                    for (int repetition = 0; repetition < repetitions; repetition++) {
+                        int configIndex = c;
+                        int rep = repetition;
+                        futures.add(executor.submit(() -> runTrial(configIndex, seed, rep)));
+                    }
+                }
+            }
+            List<TrialResult> results = new ArrayList<>(futures.size());
+            for (Future<TrialResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for trials", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Trial failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private TrialResult runTrial(int configIndex, long seed, int repetition) {
+        SweepConfig config = configs.get(configIndex);
+        long start = System.nanoTime();
+        KnapsackInstance instance = KnapsackInstance.random(config.items, seed);
+        EvolutionaryAlgorithm ea = new EvolutionaryAlgorithm(config.populationSize, instance,
+                config.crossoverProbability, config.mutationProbability, config.generations, trialSeed(seed, repetition));
+        ea.loop();
+        long wallNanos = System.nanoTime() - start;
+
+        Individual best = ea.getBestIndividual();
+        double[] history = null;
+        if (recordHistory) {
+            List<Double> fitnessHistory = ea.getFitnessHistory();
+            history = new double[fitnessHistory.size()];
+            for (int i = 0; i < history.length; i++) {
+                history[i] = fitnessHistory.get(i);
+            }
+        }
+        return new TrialResult(configIndex, config, seed, repetition, best.getFitnessValue(), best.getTotalValue(),
+                best.getTotalWeight(), best.getTotalWeight() <= instance.getCapacity(), wallNanos, ea.getEvaluations(), history);
+    }
+
+    // Different repetitions of the same seed get unrelated EA streams (the golden-ratio step keeps them apart)
+    private static long trialSeed(long seed, int repetition) {
+        return seed + (repetition + 1) * 0x9E3779B97F4A7C15L;
+    }
+
+    // Writes the results as CSV, one row per trial
+    public static void writeCsv(Path path, List<TrialResult> results) throws IOException {
+        boolean withHistory = !results.isEmpty() && results.get(0).history != null;
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("config,population,items,crossover,mutation,generations,seed,repetition,"
+                    + "best_fitness,best_value,best_weight,feasible,wall_ms,evaluations,evaluations_per_sec");
+            if (withHistory) {
+                writer.write(",history");
+            }
+            writer.newLine();
+            for (TrialResult result : results) {
+                SweepConfig config = result.config;
+                writer.write(String.format(Locale.ROOT, "%d,%d,%d,%s,%s,%d,%d,%d,%s,%d,%d,%b,%.3f,%d,%.1f",
+                        result.configIndex, config.populationSize, config.items, config.crossoverProbability,
+                        config.mutationProbability, config.generations, result.seed, result.repetition,
+                        result.bestFitness, result.bestValue, result.bestWeight, result.feasible,
+                        result.wallNanos / 1e6, result.evaluations, result.evaluationsPerSecond()));
+                if (withHistory) {
+                    writer.write(",\"");
+                    for (int i = 0; i < result.history.length; i++) {
+                        if (i > 0) {
+                            writer.write(';');
+                        }
+                        writer.write(Double.toString(result.history[i]));
+                    }
+                    writer.write('"');
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] populationSizes = null;
+        int[] itemCounts = null;
+        double[] crossoverProbabilities = null;
+        double[] mutationProbabilities = null;
+        int[] generations = null;
+        long[] seeds = {1};
+        int repetitions = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path out = Paths.get("sweep.csv");
+        boolean history = false;
+        for (String arg : args) {
+            if (arg.equals("--history")) {
+                history = true;
+                continue;
+            }
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            switch (parts[0]) {
+                case "--populations": populationSizes = parseInts(parts[1]); break;
+                case "--items": itemCounts = parseInts(parts[1]); break;
+                case "--crossover": crossoverProbabilities = parseDoubles(parts[1]); break;
+                case "--mutation": mutationProbabilities = parseDoubles(parts[1]); break;
+                case "--generations": generations = parseInts(parts[1]); break;
+                case "--seeds": seeds = parseLongs(parts[1]); break;
+                case "--repetitions": repetitions = Integer.parseInt(parts[1]); break;
+                case "--threads": threads = Integer.parseInt(parts[1]); break;
+                case "--out": out = Paths.get(parts[1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + parts[0]);
+            }
+        }
+
+        List<SweepConfig> configs;
+        if (populationSizes == null && itemCounts == null && crossoverProbabilities == null
+                && mutationProbabilities == null && generations == null) {
+            configs = testConfigs();
+        } else {
+            // Parameters that weren't given keep the value of Test A
+            configs = grid(populationSizes != null ? populationSizes : new int[]{100},
+                    itemCounts != null ? itemCounts : new int[]{20},
+                    crossoverProbabilities != null ? crossoverProbabilities : new double[]{0.8},
+                    mutationProbabilities != null ? mutationProbabilities : new double[]{0.1},
+                    generations != null ? generations : new int[]{100});
+        }
+
+        ParameterSweep sweep = new ParameterSweep(configs, seeds, repetitions);
+        sweep.setRecordHistory(history);
+        long start = System.nanoTime();
+        List<TrialResult> results = sweep.run(threads);
+        writeCsv(out, results);
+        System.out.printf("%d trials on %d threads in %.1f s, results in %s%n",
+                results.size(), threads, (System.nanoTime() - start) / 1e9, out);
+    }
+
+    private static int[] parseInts(String list) {
+        String[] items = list.split(",");
+        int[] result = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            result[i] = Integer.parseInt(items[i].trim());
+        }
+        return result;
+    }
+
+    private static long[] parseLongs(String list) {
+        String[] items = list.split(",");
+        long[] result = new long[items.length];
+        for (int i = 0; i < items.length; i++) {
+            result[i] = Long.parseLong(items[i].trim());
+        }
+        return result;
+    }
+
+    private static double[] parseDoubles(String list) {
+        String[] items = list.split(",");
+        double[] result = new double[items.length];
+        for (int i = 0; i < items.length; i++) {
+            result[i] = Double.parseDouble(items[i].trim());
+        }
+        return result;
+    }
+}
+
+// One point of a parameter sweep
+class SweepConfig {
+    final int populationSize;
+    final int items;
+    final double crossoverProbability;
+    final double mutationProbability;
+    final int generations;
+
+    SweepConfig(int populationSize, int items, double crossoverProbability, double mutationProbability, int generations) {
+        this.populationSize = populationSize;
+        this.items = items;
+        this.crossoverProbability = crossoverProbability;
+        this.mutationProbability = mutationProbability;
+        this.generations = generations;
+    }
+}
+
+// Outcome of one trial of a parameter sweep
+class TrialResult {
+    final int configIndex;
+    final SweepConfig config;
+    final long seed;
+    final int repetition;
+    final double bestFitness;
+    final long bestValue;
+    final long bestWeight;
+    final boolean feasible;
+    final long wallNanos;
+    final long evaluations;
+    final double[] history; // best fitness per generation, null unless recorded
+
+    TrialResult(int configIndex, SweepConfig config, long seed, int repetition, double bestFitness, long bestValue,
+                long bestWeight, boolean feasible, long wallNanos, long evaluations, double[] history) {
+        this.configIndex = configIndex;
+        this.config = config;
+        this.seed = seed;
+        this.repetition = repetition;
+        this.bestFitness = bestFitness;
+        this.bestValue = bestValue;
+        this.bestWeight = bestWeight;
+        this.feasible = feasible;
+        this.wallNanos = wallNanos;
+        this.evaluations = evaluations;
+        this.history = history;
+    }
+
+    double evaluationsPerSecond() {
+        return wallNanos == 0 ? 0 : evaluations * 1e9 / wallNanos;
+    }
+}
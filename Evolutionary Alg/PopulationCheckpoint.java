@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Snapshot of an EA run (population, fitnesses, RNG seed, generation counter, fitness history, current mutation
+// probability and best individual so far) that can be written to and read from a compact binary file, to resume
+// an interrupted run or warm-start a new one.
+//
+// File layout (little-endian), version 2:
+//   int magic "EACP", int version, int kind, int generation, long rngSeed, long instanceHash,
+//   int populationSize, int genotypeLength, int historyLength, int hasBest (0 or 1),
+//   double mutationProbability, double bestFitness (NaN without a best),
+//   double[historyLength] history, double[populationSize] fitness (NaN = not evaluated),
+//   then per individual, and finally for the best one if hasBest, either wordCount(genotypeLength) longs
+//   (knapsack) or genotypeLength ints (TSP tour).
+//
+// Rather than the state of every stream, a checkpoint stores one seed: an EA reseeds its streams in place (see
+// ReseedableRandom) from a freshly drawn seed at the start of every generation, and resuming reseeds from the same
+// value, so a resumed run continues exactly like the uninterrupted one would have. The instance hash guards against resuming on different items/cities.
+class PopulationCheckpoint {
+    static final int MAGIC = 0x45414350; // "EACP"
+    static final int VERSION = 2;
+    static final int KNAPSACK = 1;
+    static final int TSP = 2;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int HEADER_SIZE = 64;
+
+    final int kind;
+    final int generation;
+    final long rngSeed;
+    final long instanceHash;
+    final int genotypeLength; // items for knapsack, cities for TSP
+    final double[] history;
+    final double[] fitness;
+    final long[][] bits;      // knapsack genotypes, null for TSP
+    final int[][] tours;      // TSP tours, null for knapsack
+    final double mutationProbability; // the current one, which adaptive mutation may have moved off the base rate
+    final double bestFitness;         // of the best individual so far, NaN without one
+    final long[] bestBits;            // its genotype (knapsack), null for TSP or without a best
+    final int[] bestTour;             // its tour (TSP), null for knapsack or without a best
+
+    PopulationCheckpoint(int kind, int generation, long rngSeed, long instanceHash, int genotypeLength,
+                         double[] history, double[] fitness, long[][] bits, int[][] tours,
+                         double mutationProbability, double bestFitness, long[] bestBits, int[] bestTour) {
+        this.kind = kind;
+        this.generation = generation;
+        this.rngSeed = rngSeed;
+        this.instanceHash = instanceHash;
+        this.genotypeLength = genotypeLength;
+        this.history = history;
+        this.fitness = fitness;
+        this.bits = bits;
+        this.tours = tours;
+        this.mutationProbability = mutationProbability;
+        this.bestFitness = bestFitness;
+        this.bestBits = bestBits;
+        this.bestTour = bestTour;
+    }
+
+    boolean hasBest() {
+        return bestBits != null || bestTour != null;
+    }
+
+    int populationSize() {
+        return fitness.length;
+    }
+
+    // Checks that this checkpoint belongs to the given kind of problem and instance
+    void checkCompatible(int kind, long instanceHash, int genotypeLength) {
+        if (this.kind != kind) {
+            throw new IllegalArgumentException("Checkpoint is for problem kind " + this.kind + ", expected " + kind);
+        }
+        if (this.genotypeLength != genotypeLength) {
+            throw new IllegalArgumentException("Checkpoint genotype length " + this.genotypeLength + " does not match " + genotypeLength);
+        }
+        if (this.instanceHash != instanceHash) {
+            throw new IllegalArgumentException("Checkpoint was taken on a different problem instance");
+        }
+    }
+
+    // Writes to a temporary file next to path and then atomically replaces path, so a crash mid-write never
+    // leaves a truncated checkpoint behind
+    void write(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(generation);
+            buffer.putLong(rngSeed).putLong(instanceHash);
+            buffer.putInt(fitness.length).putInt(genotypeLength).putInt(history.length).putInt(hasBest() ? 1 : 0);
+            buffer.putDouble(mutationProbability).putDouble(bestFitness);
+            putDoubles(channel, buffer, history);
+            putDoubles(channel, buffer, fitness);
+            for (int i = 0; i < fitness.length; i++) {
+                if (kind == KNAPSACK) {
+                    putLongs(channel, buffer, bits[i]);
+                } else {
+                    putInts(channel, buffer, tours[i]);
+                }
+            }
+            if (bestBits != null) {
+                putLongs(channel, buffer, bestBits);
+            } else if (bestTour != null) {
+                putInts(channel, buffer, bestTour);
+            }
+            drain(channel, buffer);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static PopulationCheckpoint read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip(); // start empty, fill() reads on demand
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Checkpoint is truncated, shorter than its header: " + path);
+            }
+            fill(channel, buffer, HEADER_SIZE);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a population checkpoint: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + path);
+            }
+            int kind = buffer.getInt();
+            int generation = buffer.getInt();
+            long rngSeed = buffer.getLong();
+            long instanceHash = buffer.getLong();
+            int populationSize = buffer.getInt();
+            int genotypeLength = buffer.getInt();
+            int historyLength = buffer.getInt();
+            int bestCount = buffer.getInt();
+            double mutationProbability = buffer.getDouble();
+            double bestFitness = buffer.getDouble();
+            if (kind != KNAPSACK && kind != TSP) {
+                throw new IOException("Unknown problem kind " + kind + " in " + path);
+            }
+            // Sizes from a corrupt header must not turn into huge or negative allocations: everything they
+            // describe has to be in the file
+            if (populationSize < 0 || genotypeLength < 0 || historyLength < 0 || bestCount < 0 || bestCount > 1) {
+                throw new IOException("Corrupt checkpoint header (population " + populationSize + ", genotype length "
+                        + genotypeLength + ", history " + historyLength + ", best " + bestCount + ") in " + path);
+            }
+            long individualBytes = kind == KNAPSACK ? ((genotypeLength + 63L) >>> 6) * Long.BYTES : (long) genotypeLength * Integer.BYTES;
+            long expected = HEADER_SIZE + ((long) historyLength + populationSize) * Double.BYTES
+                    + (populationSize + (long) bestCount) * individualBytes;
+            if (expected != channel.size()) {
+                throw new IOException("Checkpoint should be " + expected + " bytes for its header, but is "
+                        + channel.size() + ": " + path);
+            }
+            if (!(mutationProbability >= 0 && mutationProbability <= 1)) {
+                throw new IOException("Corrupt checkpoint header (mutation probability " + mutationProbability + ") in " + path);
+            }
+            boolean hasBest = bestCount == 1;
+
+            double[] history = new double[historyLength];
+            getDoubles(channel, buffer, history);
+            double[] fitness = new double[populationSize];
+            getDoubles(channel, buffer, fitness);
+            long[][] bits = null;
+            int[][] tours = null;
+            long[] bestBits = null;
+            int[] bestTour = null;
+            if (kind == KNAPSACK) {
+                bits = new long[populationSize + (hasBest ? 1 : 0)][(genotypeLength + 63) >>> 6];
+                for (long[] genotype : bits) {
+                    getLongs(channel, buffer, genotype);
+                }
+                if (hasBest) {
+                    bestBits = bits[populationSize];
+                    bits = Arrays.copyOf(bits, populationSize);
+                }
+            } else {
+                tours = new int[populationSize + (hasBest ? 1 : 0)][genotypeLength];
+                for (int[] tour : tours) {
+                    getInts(channel, buffer, tour);
+                }
+                if (hasBest) {
+                    bestTour = tours[populationSize];
+                    tours = Arrays.copyOf(tours, populationSize);
+                }
+            }
+            return new PopulationCheckpoint(kind, generation, rngSeed, instanceHash, genotypeLength, history, fitness,
+                    bits, tours, mutationProbability, bestFitness, bestBits, bestTour);
+        }
+    }
+
+    // ---------- Bulk transfers through one reusable direct buffer ----------
+
+    private static void putDoubles(FileChannel channel, ByteBuffer buffer, double[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, buffer.remaining() / Double.BYTES);
+            if (count == 0) {
+                drain(channel, buffer);
+                continue;
+            }
+            buffer.asDoubleBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            offset += count;
+        }
+    }
+
+    private static void putLongs(FileChannel channel, ByteBuffer buffer, long[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, buffer.remaining() / Long.BYTES);
+            if (count == 0) {
+                drain(channel, buffer);
+                continue;
+            }
+            buffer.asLongBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            offset += count;
+        }
+    }
+
+    private static void putInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            int count = Math.min(values.length - offset, buffer.remaining() / Integer.BYTES);
+            if (count == 0) {
+                drain(channel, buffer);
+                continue;
+            }
+            buffer.asIntBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+        }
+    }
+
+    // Writes out everything put into the buffer so far and makes it empty again
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void getDoubles(FileChannel channel, ByteBuffer buffer, double[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            fill(channel, buffer, Double.BYTES);
+            int count = Math.min(values.length - offset, buffer.remaining() / Double.BYTES);
+            buffer.asDoubleBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            offset += count;
+        }
+    }
+
+    private static void getLongs(FileChannel channel, ByteBuffer buffer, long[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            fill(channel, buffer, Long.BYTES);
+            int count = Math.min(values.length - offset, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            offset += count;
+        }
+    }
+
+    private static void getInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            fill(channel, buffer, Integer.BYTES);
+            int count = Math.min(values.length - offset, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+        }
+    }
+
+    // Makes sure at least minBytes are available for reading, refilling the buffer from the channel if needed
+    private static void fill(FileChannel channel, ByteBuffer buffer, int minBytes) throws IOException {
+        if (buffer.remaining() >= minBytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < minBytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Checkpoint file is truncated");
+            }
+        }
+        buffer.flip();
+    }
+}
+
+// Writes checkpoints on a background thread so the generation loop never waits for the disk
+// The loop thread only copies the population into a PopulationCheckpoint; if the previous write is still running
+// when the next checkpoint is due, the new one is skipped rather than queued.
+class CheckpointWriter {
+    private static final int CLOSE_TIMEOUT_MINUTES = 1;
+
+    private final Path path;
+    private final int interval;
+    private final ExecutorService executor;
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+    CheckpointWriter(Path path, int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        this.path = path;
+        this.interval = interval;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // True when a checkpoint is due after the given number of completed generations and the writer is idle
+    boolean isDue(int generation) {
+        return generation % interval == 0 && !writing.get();
+    }
+
+    void submit(PopulationCheckpoint checkpoint) {
+        if (!writing.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                checkpoint.write(path);
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                writing.set(false);
+            }
+        });
+    }
+
+    // Waits for an in-flight write and stops the writer thread, rethrowing the first write failure (if any). A write
+    // that doesn't finish in time is reported too: writes go through a temporary file, so the checkpoint file then
+    // still holds the previous checkpoint (if any), not the latest one.
+    void close() throws IOException {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new IOException("Checkpoint write to " + path + " did not finish within " + CLOSE_TIMEOUT_MINUTES
+                        + " minute(s), the latest checkpoint is lost");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the checkpoint write to " + path);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// How ProbabilityVectorEA learns from the candidates of a generation
+enum ProbabilityModel {
+    PBIL,      // population-based incremental learning: move every probability towards the best candidate
+    COMPACT_GA // compact GA: move the probabilities where best and worst differ by 1/populationSize
+}
+
+// Estimation-of-distribution alternative to EvolutionaryAlgorithm for very large knapsack instances
+// Instead of a population there is one probability per item (float[], 4 bytes per item). Every generation
+// samples populationSize candidates from it, keeps only the best (and, for the compact GA, the worst) candidate and
+// moves the probabilities towards it. Memory is O(items): each sampling task owns a few packed genotypes that it
+// reuses, so 1000 candidates of 10M items need tens of MB instead of a 1.25 GB population.
+// Same constructor parameters, loop() and getters as EvolutionaryAlgorithm (getBestIndividual, getFitnessHistory,
+// getValues, ...), so a report like Test.runTest's only needs its constructor call swapped to run this class;
+// as Evolvers (e.g. for a RunHandle) the two are interchangeable as they are.
+class ProbabilityVectorEA implements Evolver<Individual> {
+    private final int populationSize; // candidates sampled per generation (the virtual population of the compact GA)
+    private final int genotypeLength;
+    private final int generations;
+    private final ReseedableRandom random;
+    private MutationEngine mutation;
+
+    private final KnapsackInstance instance;
+    private final int[] values;
+    private final int[] weights;
+    private final long capacity;
+
+    private final float[] probabilities; // probabilities[i] = chance that a sampled candidate selects item i
+    private ProbabilityModel model = ProbabilityModel.PBIL;
+    private double learningRate = 0.1;    // PBIL: how far the probabilities move towards the best candidate
+    private double mutationShift = 0.05;  // how far a mutated probability moves towards a random 0 or 1
+
+    // Optional parallel sampling (null means sequential), one task per pool thread
+    private ForkJoinPool samplingPool;
+    private SampleTask[] tasks;
+
+    private Individual best; // copy of the best candidate sampled so far, starting with one the constructor samples
+    private final List<Double> bestFitnessHistory = new ArrayList<>();
+    private int generation;
+    private long evaluations;
+
+    public ProbabilityVectorEA(int populationSize, int genotypeLength, double crossoverProbability, double mutationProbability, int generations) {
+        this(populationSize, genotypeLength, crossoverProbability, mutationProbability, generations, new SplittableRandom().nextLong());
+    }
+
+    // Same as above, but all randomness (items and sampling) is derived from the given seed
+    public ProbabilityVectorEA(int populationSize, int genotypeLength, double crossoverProbability, double mutationProbability, int generations, long seed) {
+        this(populationSize, KnapsackInstance.random(genotypeLength, seed), crossoverProbability, mutationProbability, generations, seed);
+        // Print item information and capacity for reference.
+        instance.print(System.out);
+    }
+
+    // Runs on a given (e.g. loaded) instance, nothing is printed
+    // There is no crossover in a probability model, crossoverProbability is only accepted so the constructors match
+    // EvolutionaryAlgorithm's. mutationProbability is the per-item chance that a probability is mutated each generation.
+    public ProbabilityVectorEA(int populationSize, KnapsackInstance instance, double crossoverProbability, double mutationProbability, int generations, long seed) {
+        if (populationSize < 2) {
+            throw new IllegalArgumentException("Need at least two candidates per generation: " + populationSize);
+        }
+        this.populationSize = populationSize;
+        this.genotypeLength = instance.size();
+        this.generations = generations;
+        this.random = new ReseedableRandom(seed);
+        this.mutation = new MutationEngine(mutationProbability, random.split());
+        this.instance = instance;
+        this.values = instance.values();
+        this.weights = instance.weights();
+        this.capacity = instance.getCapacity();
+        this.probabilities = new float[genotypeLength];
+        Arrays.fill(probabilities, 0.5f);
+        this.tasks = new SampleTask[]{new SampleTask()};
+        // Sampled here rather than by the first getter call, so a RunHandle asking for the best fitness up front
+        // doesn't change the run
+        this.best = newCandidate();
+        sample(tasks[0].stream(random.nextLong()), best);
+        evaluations = 1;
+    }
+
+    public void loop() {
+        while (generation < generations) {
+            step();
+        }
+    }
+
+    // Samples and evaluates one generation of candidates, then updates the probabilities from it
+    // Every candidate draws from a stream seeded from the generation's seed and the candidate's index (each task
+    // reseeds its one stream in place), and ties go to the lower index, so the result doesn't depend on how many
+    // tasks sampled the generation
+    @Override
+    public void step() {
+        long generationSeed = random.nextLong();
+        if (samplingPool == null || tasks.length == 1) {
+            tasks[0].prepare(generationSeed, 0, populationSize);
+            tasks[0].call();
+        } else {
+            List<Callable<Void>> calls = new ArrayList<>(tasks.length);
+            for (int t = 0; t < tasks.length; t++) {
+                tasks[t].prepare(generationSeed, (int) ((long) populationSize * t / tasks.length),
+                        (int) ((long) populationSize * (t + 1) / tasks.length));
+                calls.add(tasks[t]);
+            }
+            awaitAll(samplingPool.invokeAll(calls));
+        }
+        evaluations += populationSize;
+
+        // Tasks hold consecutive index ranges, so the first task with the top fitness has its lowest index
+        SampleTask bestTask = null;
+        SampleTask worstTask = null;
+        for (SampleTask task : tasks) {
+            if (task.isEmpty()) {
+                continue;
+            }
+            if (bestTask == null || task.best.getFitnessValue() > bestTask.best.getFitnessValue()) {
+                bestTask = task;
+            }
+            if (worstTask == null || task.worst.getFitnessValue() < worstTask.worst.getFitnessValue()) {
+                worstTask = task;
+            }
+        }
+        Individual generationBest = bestTask.best;
+        bestFitnessHistory.add(generationBest.getFitnessValue());
+        if (generationBest.getFitnessValue() > best.getFitnessValue()) {
+            best.copyFrom(generationBest);
+        }
+
+        if (model == ProbabilityModel.PBIL) {
+            learnPbil(generationBest);
+        } else {
+            learnCompact(generationBest, worstTask.worst);
+        }
+        mutateProbabilities();
+        generation++;
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while sampling", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Sampling failed", e.getCause());
+            }
+        }
+    }
+
+    // p += learningRate * (bit - p) for every item
+    private void learnPbil(Individual winner) {
+        long[] bits = winner.getBits();
+        float rate = (float) learningRate;
+        for (int i = 0; i < genotypeLength; i++) {
+            float target = (bits[i >>> 6] & (1L << i)) != 0 ? 1f : 0f;
+            probabilities[i] += rate * (target - probabilities[i]);
+        }
+    }
+
+    // One step of 1/populationSize towards the winner wherever winner and loser disagree, only those bits are visited
+    private void learnCompact(Individual winner, Individual loser) {
+        long[] winnerBits = winner.getBits();
+        long[] loserBits = loser.getBits();
+        float step = 1f / populationSize;
+        for (int w = 0; w < winnerBits.length; w++) {
+            for (long diff = winnerBits[w] ^ loserBits[w]; diff != 0; diff &= diff - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(diff);
+                float p = (winnerBits[w] & (1L << i)) != 0 ? probabilities[i] + step : probabilities[i] - step;
+                probabilities[i] = Math.max(0f, Math.min(1f, p));
+            }
+        }
+    }
+
+    // PBIL mutation, keeps converged probabilities from getting stuck at 0 or 1
+    // Uses the geometric skips of the mutation engine, so it costs O(mutated items) rather than O(items)
+    private void mutateProbabilities() {
+        float shift = (float) mutationShift;
+        for (int i = mutation.nextSite(0, genotypeLength); i < genotypeLength; i = mutation.nextSite(i + 1, genotypeLength)) {
+            probabilities[i] = probabilities[i] * (1 - shift) + (mutation.nextInt(2) == 0 ? shift : 0f);
+        }
+    }
+
+    // Samples the candidates [from, to) of a generation into a few reused genotypes and keeps the best and worst
+    // Swapping the buffers instead of copying means a new best or worst costs nothing
+    private class SampleTask implements Callable<Void> {
+        private Individual current = newCandidate();
+        private Individual best = newCandidate();
+        private Individual worst = newCandidate();
+        private final ReseedableRandom stream = new ReseedableRandom(0);
+        private long generationSeed;
+        private int from;
+        private int to;
+
+        void prepare(long generationSeed, int from, int to) {
+            this.generationSeed = generationSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean isEmpty() {
+            return from >= to;
+        }
+
+        // The task's stream, restarted from the given seed
+        ReseedableRandom stream(long seed) {
+            stream.reseed(seed);
+            return stream;
+        }
+
+        @Override
+        public Void call() {
+            for (int index = from; index < to; index++) {
+                sample(stream(generationSeed + index * 0x9E3779B97F4A7C15L), current);
+                if (index == from) {
+                    best.copyFrom(current);
+                    worst.copyFrom(current);
+                } else if (current.getFitnessValue() > best.getFitnessValue()) {
+                    Individual previous = best;
+                    best = current;
+                    current = previous;
+                } else if (current.getFitnessValue() < worst.getFitnessValue()) {
+                    Individual previous = worst;
+                    worst = current;
+                    current = previous;
+                }
+            }
+            return null;
+        }
+    }
+
+    private Individual newCandidate() {
+        return new Individual(new long[Individual.wordCount(genotypeLength)], genotypeLength);
+    }
+
+    // Draws every bit from its probability, summing up the totals on the way so the fitness comes for free
+    // Branch-free: with p around 0.5 an if per item would be mispredicted half the time, which cost more than the
+    // random numbers themselves. A 32-bit draw below p * 2^32 selects the item.
+    private void sample(ReseedableRandom stream, Individual target) {
+        long[] bits = target.getBits();
+        long totalValue = 0;
+        long totalWeight = 0;
+        for (int w = 0; w < bits.length; w++) {
+            int base = w << 6;
+            int end = Math.min(64, genotypeLength - base);
+            long word = 0;
+            for (int b = 0; b < end; b++) {
+                int i = base + b;
+                long threshold = (long) (probabilities[i] * 4294967296.0);
+                long selected = ((stream.nextInt() & 0xFFFFFFFFL) - threshold) >>> 63; // 1 if the draw is below
+                word |= selected << b;
+                totalValue += values[i] & -selected;
+                totalWeight += weights[i] & -selected;
+            }
+            bits[w] = word;
+        }
+        target.setTotals(totalValue, totalWeight);
+        target.setFitness(EvolutionaryAlgorithm.knapsackFitness(totalValue, totalWeight, capacity));
+    }
+
+    public void setModel(ProbabilityModel model) {
+        this.model = model;
+    }
+
+    // PBIL learning rate in (0, 1]
+    public void setLearningRate(double learningRate) {
+        if (learningRate <= 0 || learningRate > 1) {
+            throw new IllegalArgumentException("Learning rate must be in (0, 1]: " + learningRate);
+        }
+        this.learningRate = learningRate;
+    }
+
+    // How far a mutated probability moves towards 0 or 1, in [0, 1]
+    public void setMutationShift(double mutationShift) {
+        if (mutationShift < 0 || mutationShift > 1) {
+            throw new IllegalArgumentException("Mutation shift must be in [0, 1]: " + mutationShift);
+        }
+        this.mutationShift = mutationShift;
+    }
+
+    // Samples each generation on the given pool, split into one task per pool thread (null goes back to sequential)
+    // Each task keeps three genotypes of its own, that's all the memory sampling needs besides the probabilities
+    public void setParallelSampling(ForkJoinPool pool) {
+        this.samplingPool = pool;
+        int count = pool == null ? 1 : Math.max(1, Math.min(pool.getParallelism(), populationSize));
+        tasks = new SampleTask[count];
+        for (int t = 0; t < count; t++) {
+            tasks[t] = new SampleTask();
+        }
+    }
+
+    // The model itself, probabilities[i] is the chance of selecting item i (live array, updated every generation)
+    public float[] getProbabilities() {
+        return probabilities;
+    }
+
+    // The best candidate sampled so far (this EA's own copy, overwritten in place when a better one turns up)
+    @Override
+    public Individual getBestIndividual() {
+        return best;
+    }
+
+    @Override
+    public double getBestFitness() {
+        return getBestIndividual().getFitnessValue();
+    }
+
+    public double getValues(int i) {
+        return values[i];
+    }
+
+    public double getWeights(int i) {
+        return weights[i];
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    @Override
+    public int getGeneration() {
+        return generation;
+    }
+
+    public KnapsackInstance getInstance() {
+        return instance;
+    }
+
+    // Best fitness among each generation's candidates
+    public List<Double> getFitnessHistory() {
+        return bestFitnessHistory;
+    }
+}
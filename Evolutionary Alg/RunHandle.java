@@ -0,0 +1,254 @@
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// Why a run stopped
+enum StopReason {
+    GENERATIONS,  // the generation limit was reached
+    WALL_CLOCK,   // the time limit ran out
+    EVALUATIONS,  // the evaluation limit was reached
+    STAGNATION,   // the best fitness didn't improve for too many generations
+    CANCELLED     // cancel() was called
+}
+
+// Runs an EA on a background thread until one of its budgets is used up or it is cancelled, e.g.
+//
+//   RunHandle<Individual> run = new RunHandle<>(ea, Individual::copy);
+//   run.setWallClockLimit(Duration.ofSeconds(2));
+//   run.setStagnationLimit(200);
+//   run.setProgressListener(snapshot -> System.out.println(snapshot), 500);
+//   run.start();
+//   ...
+//   RunSnapshot<Individual> result = run.await();
+//
+// All limits are checked between generations. After every generation the run publishes an immutable snapshot
+// (counters plus a private copy of the best individual, which is only copied again when it improves) through a
+// volatile field, so getSnapshot() never blocks and never pauses evolution. The evolver itself must not be touched
+// by other threads while the run is going.
+class RunHandle<T> {
+    private final Evolver<T> evolver;
+    private final UnaryOperator<T> copier;
+
+    private int generationLimit = Integer.MAX_VALUE;
+    private long wallClockLimitNanos = Long.MAX_VALUE;
+    private long evaluationLimit = Long.MAX_VALUE;
+    private int stagnationLimit = Integer.MAX_VALUE;
+    private Consumer<RunSnapshot<T>> progressListener;
+    private long progressIntervalNanos;
+
+    private volatile RunSnapshot<T> snapshot;
+    private volatile boolean cancelled = false;
+    private final CompletableFuture<RunSnapshot<T>> result = new CompletableFuture<>();
+    private Thread thread;
+
+    // copier makes the private copies of the best individual handed out in snapshots (e.g. Individual::copy)
+    RunHandle(Evolver<T> evolver, UnaryOperator<T> copier) {
+        this.evolver = evolver;
+        this.copier = copier;
+    }
+
+    // ---------- Budgets, set before start() ----------
+
+    // Stops after this many generations of this run
+    public void setGenerationLimit(int generations) {
+        checkNotStarted();
+        this.generationLimit = generations;
+    }
+
+    // Stops once this much time has passed since start() (checked between generations)
+    public void setWallClockLimit(Duration limit) {
+        checkNotStarted();
+        this.wallClockLimitNanos = limit.toNanos();
+    }
+
+    // Stops once the evolver has done this many fitness evaluations during this run
+    public void setEvaluationLimit(long evaluations) {
+        checkNotStarted();
+        this.evaluationLimit = evaluations;
+    }
+
+    // Stops when the best fitness hasn't improved for this many generations
+    public void setStagnationLimit(int generations) {
+        checkNotStarted();
+        this.stagnationLimit = generations;
+    }
+
+    // Calls the listener on the run's thread with the latest snapshot, at most once per interval and once more
+    // with the final snapshot. A slow listener slows the run down, so hand heavy work (GUI updates) to another thread.
+    public void setProgressListener(Consumer<RunSnapshot<T>> listener, long intervalMillis) {
+        checkNotStarted();
+        this.progressListener = listener;
+        this.progressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    private void checkNotStarted() {
+        if (thread != null) {
+            throw new IllegalStateException("Run has already been started");
+        }
+    }
+
+    // ---------- Control ----------
+
+    public synchronized RunHandle<T> start() {
+        checkNotStarted();
+        thread = new Thread(this::run, "ea-run");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    // Asks the run to stop after the current generation; await() then returns a snapshot with reason CANCELLED
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Latest published snapshot, null until the run has evaluated its initial population
+    public RunSnapshot<T> getSnapshot() {
+        return snapshot;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    // Completes with the final snapshot, or exceptionally if the evolver threw
+    public CompletableFuture<RunSnapshot<T>> getResult() {
+        return result;
+    }
+
+    // Waits for the run to stop and returns its final snapshot
+    public RunSnapshot<T> await() {
+        try {
+            return result.join();
+        } catch (CompletionException | CancellationException e) {
+            throw new IllegalStateException("Run failed", e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    // Waits at most the given time, returns the final snapshot or null if the run is still going
+    public RunSnapshot<T> await(Duration timeout) {
+        try {
+            return result.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the run", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Run failed", e.getCause());
+        }
+    }
+
+    // ---------- The run itself ----------
+
+    private void run() {
+        try {
+            long start = System.nanoTime();
+            int startGeneration = evolver.getGeneration();
+            long startEvaluations = evolver.getEvaluations();
+
+            double bestFitness = evolver.getBestFitness();
+            T best = copier.apply(evolver.getBestIndividual());
+            int lastImprovement = startGeneration;
+            publish(new RunSnapshot<>(startGeneration, 0, bestFitness, best, lastImprovement, 0, null));
+            long nextProgress = start;
+
+            StopReason reason;
+            while (true) {
+                int generation = evolver.getGeneration();
+                long now = System.nanoTime();
+                if (cancelled) {
+                    reason = StopReason.CANCELLED;
+                } else if (generation - startGeneration >= generationLimit) {
+                    reason = StopReason.GENERATIONS;
+                } else if (now - start >= wallClockLimitNanos) {
+                    reason = StopReason.WALL_CLOCK;
+                } else if (evolver.getEvaluations() - startEvaluations >= evaluationLimit) {
+                    reason = StopReason.EVALUATIONS;
+                } else if (generation - lastImprovement >= stagnationLimit) {
+                    reason = StopReason.STAGNATION;
+                } else {
+                    reason = null;
+                }
+                if (reason != null) {
+                    break;
+                }
+
+                evolver.step();
+
+                generation = evolver.getGeneration();
+                double fitness = evolver.getBestFitness();
+                if (fitness > bestFitness) {
+                    bestFitness = fitness;
+                    best = copier.apply(evolver.getBestIndividual());
+                    lastImprovement = generation;
+                }
+                now = System.nanoTime();
+                RunSnapshot<T> current = new RunSnapshot<>(generation, evolver.getEvaluations() - startEvaluations, bestFitness, best,
+                        lastImprovement, now - start, null);
+                publish(current);
+                if (progressListener != null && now >= nextProgress) {
+                    progressListener.accept(current);
+                    nextProgress = now + progressIntervalNanos;
+                }
+            }
+
+            RunSnapshot<T> last = snapshot;
+            RunSnapshot<T> done = new RunSnapshot<>(last.generation, last.evaluations, last.bestFitness, last.best,
+                    last.lastImprovementGeneration, System.nanoTime() - start, reason);
+            publish(done);
+            if (progressListener != null) {
+                progressListener.accept(done);
+            }
+            result.complete(done);
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        }
+    }
+
+    private void publish(RunSnapshot<T> snapshot) {
+        this.snapshot = snapshot;
+    }
+}
+
+// Immutable progress report of a RunHandle, safe to read from any thread
+class RunSnapshot<T> {
+    final int generation;
+    final long evaluations;              // fitness evaluations during this run
+    final double bestFitness;
+    final T best;                        // private copy, never changed after publication
+    final int lastImprovementGeneration; // generation in which bestFitness was reached
+    final long elapsedNanos;
+    final StopReason stopReason;         // null while the run is still going
+
+    RunSnapshot(int generation, long evaluations, double bestFitness, T best, int lastImprovementGeneration,
+                long elapsedNanos, StopReason stopReason) {
+        this.generation = generation;
+        this.evaluations = evaluations;
+        this.bestFitness = bestFitness;
+        this.best = best;
+        this.lastImprovementGeneration = lastImprovementGeneration;
+        this.elapsedNanos = elapsedNanos;
+        this.stopReason = stopReason;
+    }
+
+    public boolean isFinal() {
+        return stopReason != null;
+    }
+
+    public double getEvaluationsPerSecond() {
+        return elapsedNanos == 0 ? 0 : evaluations * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("generation %d, %d evaluations, best fitness %s after %.2f s%s", generation, evaluations,
+                bestFitness, elapsedNanos / 1e9, stopReason == null ? "" : " (stopped: " + stopReason + ")");
+    }
+}
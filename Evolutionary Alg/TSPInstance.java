@@ -0,0 +1,246 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// A TSP instance from disk: city coordinates, the metric distances follow and, when known, an optimal tour
+//
+// load() maps the file into memory and parses it straight into primitive coordinate arrays, without a String per
+// line. The format is detected from the content:
+//   - TSPLIB: "KEY : value" header lines (NAME, TYPE, COMMENT, DIMENSION, EDGE_WEIGHT_TYPE, ...), then a
+//     NODE_COORD_SECTION of "id x y" lines with ids 1..DIMENSION, ended by EOF or the end of the file.
+//     EDGE_WEIGHT_TYPE must be EUC_2D, CEIL_2D, ATT or GEO; instances given as explicit weight matrices aren't
+//     supported.
+//   - route files (our own stop lists): one stop per line, "x y" or "id x y", separated by blanks, commas or
+//     semicolons; lines that don't start with a number (a column header, '#' comments) are skipped. Stops keep
+//     the order of the file, ids are ignored, distances are Euclidean.
+// An optimal tour is read from a TSPLIB tour file (a TOUR_SECTION of 1-based ids, ended by -1 or EOF). load()
+// picks up a file named like the instance with the extension .opt.tour (a280.opt.tour for a280.tsp) by itself.
+class TSPInstance {
+    private static final String[] TSPLIB_KEYWORDS = {
+        "NAME", "TYPE", "COMMENT", "DIMENSION", "EDGE_WEIGHT_TYPE", "NODE_COORD_TYPE", "NODE_COORD_SECTION"
+    };
+
+    final String name;
+    final double[] x;
+    final double[] y;
+    final DistanceMetric metric;
+    final int[] optimalTour; // 0-based city indices, null when unknown
+
+    TSPInstance(String name, double[] x, double[] y, DistanceMetric metric, int[] optimalTour) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("Got " + x.length + " x but " + y.length + " y coordinates");
+        }
+        if (optimalTour != null && optimalTour.length != x.length) {
+            throw new IllegalArgumentException("Optimal tour has " + optimalTour.length + " cities, the instance " + x.length);
+        }
+        this.name = name;
+        this.x = x;
+        this.y = y;
+        this.metric = metric;
+        this.optimalTour = optimalTour;
+    }
+
+    int cities() {
+        return x.length;
+    }
+
+    // Length of the optimal tour under the given distances (which must be this instance's), NaN when unknown
+    double optimalLength(DistanceOracle distances) {
+        return optimalTour == null ? Double.NaN : tourLength(optimalTour, distances);
+    }
+
+    // Closed tour length, summed in tour order like the EAs' evaluation
+    static double tourLength(int[] tour, DistanceOracle distances) {
+        int n = tour.length;
+        double length = 0.0;
+        for (int i = 0; i < n - 1; i++) {
+            length += distances.distance(tour[i], tour[i + 1]);
+        }
+        return length + distances.distance(tour[n - 1], tour[0]);
+    }
+
+    // ---------- Loading ----------
+
+    // Loads an instance in either format, with the optimal tour from the .opt.tour file next to it if there is one
+    static TSPInstance load(Path path) throws IOException {
+        Path tour = optimalTourPath(path);
+        return load(path, Files.isRegularFile(tour) ? tour : null);
+    }
+
+    // Loads an instance in either format, with the optimal tour from the given tour file (null for none)
+    static TSPInstance load(Path path, Path optimalTour) throws IOException {
+        TSPInstance instance = map(path, scanner -> {
+            scanner.skipWhitespace();
+            for (String keyword : TSPLIB_KEYWORDS) {
+                if (scanner.atWord(keyword)) {
+                    return parseTsplib(scanner, path);
+                }
+            }
+            return parseRoutes(scanner, path);
+        });
+        if (optimalTour == null) {
+            return instance;
+        }
+        int[] tour = loadTour(optimalTour, instance.cities());
+        return new TSPInstance(instance.name, instance.x, instance.y, instance.metric, tour);
+    }
+
+    // a280.tsp -> a280.opt.tour, routes.txt -> routes.opt.tour
+    static Path optimalTourPath(Path path) {
+        return path.resolveSibling(fileName(path) + ".opt.tour");
+    }
+
+    // Reads a TSPLIB tour file into 0-based city indices, checking that it visits each of the cities exactly once
+    static int[] loadTour(Path path, int cities) throws IOException {
+        return map(path, scanner -> {
+            while (true) {
+                scanner.skipWhitespace();
+                if (scanner.atEnd()) {
+                    throw new IOException("No TOUR_SECTION in " + path);
+                }
+                if (scanner.skipWord("DIMENSION")) {
+                    int dimension = scanner.nextInt();
+                    if (dimension != cities) {
+                        throw new IOException("Tour in " + path + " has " + dimension + " cities, the instance " + cities);
+                    }
+                } else if (scanner.skipWord("TOUR_SECTION")) {
+                    break;
+                }
+                scanner.skipLine();
+            }
+            int[] tour = new int[cities];
+            boolean[] visited = new boolean[cities];
+            for (int i = 0; i < cities; i++) {
+                int city = scanner.nextInt() - 1;
+                if (city < 0 || city >= cities || visited[city]) {
+                    throw new IOException("Tour in " + path + " is not a permutation of 1.." + cities
+                            + " (" + (city + 1) + " at position " + (i + 1) + ")");
+                }
+                visited[city] = true;
+                tour[i] = city;
+            }
+            return tour;
+        });
+    }
+
+    private interface Parser<T> {
+        T parse(ByteScanner scanner) throws IOException;
+    }
+
+    private static <T> T map(Path path, Parser<T> parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map in one piece");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parser.parse(new ByteScanner(buffer, path));
+        }
+    }
+
+    // Header lines in any order up to NODE_COORD_SECTION, then DIMENSION "id x y" lines
+    private static TSPInstance parseTsplib(ByteScanner scanner, Path path) throws IOException {
+        String name = fileName(path);
+        int dimension = -1;
+        DistanceMetric metric = null;
+        while (true) {
+            scanner.skipWhitespace();
+            if (scanner.atEnd()) {
+                throw new IOException("No NODE_COORD_SECTION in " + path);
+            }
+            if (scanner.skipWord("NAME")) {
+                name = scanner.restOfLine();
+                continue;
+            }
+            if (scanner.skipWord("DIMENSION")) {
+                dimension = scanner.nextInt();
+            } else if (scanner.skipWord("EDGE_WEIGHT_TYPE")) {
+                scanner.atLineEnd();
+                for (DistanceMetric candidate : DistanceMetric.values()) {
+                    if (candidate != DistanceMetric.EUCLIDEAN && scanner.skipWord(candidate.name())) {
+                        metric = candidate;
+                        break;
+                    }
+                }
+                if (metric == null) {
+                    throw new IOException("Unsupported EDGE_WEIGHT_TYPE " + scanner.restOfLine() + " in " + path);
+                }
+            } else if (scanner.skipWord("NODE_COORD_SECTION")) {
+                scanner.skipLine();
+                break;
+            }
+            scanner.skipLine(); // TYPE, COMMENT, NODE_COORD_TYPE, DISPLAY_DATA_TYPE, ...
+        }
+        if (dimension < 1) {
+            throw new IOException("Missing DIMENSION before NODE_COORD_SECTION in " + path);
+        }
+        if (metric == null) {
+            throw new IOException("Missing EDGE_WEIGHT_TYPE before NODE_COORD_SECTION in " + path);
+        }
+        double[] x = new double[dimension];
+        double[] y = new double[dimension];
+        boolean[] seen = new boolean[dimension];
+        for (int i = 0; i < dimension; i++) {
+            int id = scanner.nextInt();
+            if (id < 1 || id > dimension || seen[id - 1]) {
+                throw new IOException("Bad or repeated node id " + id + " in the NODE_COORD_SECTION of " + path);
+            }
+            seen[id - 1] = true;
+            x[id - 1] = scanner.nextDouble();
+            y[id - 1] = scanner.nextDouble();
+        }
+        return new TSPInstance(name, x, y, metric, null);
+    }
+
+    // One "x y" or "id x y" stop per line; the arrays grow by doubling and are trimmed at the end
+    private static TSPInstance parseRoutes(ByteScanner scanner, Path path) throws IOException {
+        int capacity = 1024;
+        double[] x = new double[capacity];
+        double[] y = new double[capacity];
+        int stops = 0;
+        while (true) {
+            scanner.skipWhitespace();
+            if (scanner.atEnd()) {
+                break;
+            }
+            if (!scanner.atNumber()) {
+                scanner.skipLine(); // column header or comment
+                continue;
+            }
+            double first = scanner.nextDouble();
+            if (scanner.atLineEnd()) {
+                throw new IOException("Stop " + (stops + 1) + " in " + path + " has a single number");
+            }
+            double second = scanner.nextDouble();
+            if (stops == capacity) {
+                capacity *= 2;
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+            }
+            if (scanner.atLineEnd()) {
+                x[stops] = first;
+                y[stops] = second;
+            } else { // the first number was an id
+                x[stops] = second;
+                y[stops] = scanner.nextDouble();
+            }
+            stops++;
+            scanner.skipLine();
+        }
+        if (stops == 0) {
+            throw new IOException("No stops in " + path);
+        }
+        return new TSPInstance(fileName(path), Arrays.copyOf(x, stops), Arrays.copyOf(y, stops),
+                DistanceMetric.EUCLIDEAN, null);
+    }
+
+    // File name without its extension
+    private static String fileName(Path path) {
+        String file = path.getFileName().toString();
+        int dot = file.lastIndexOf('.');
+        return dot > 0 ? file.substring(0, dot) : file;
+    }
+}
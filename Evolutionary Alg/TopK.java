@@ -0,0 +1,90 @@
+// Partial selection over a primitive fitness array, so the EAs can find their elites, emigrants and worst
+// individuals in expected O(n) time without sorting the population (and without boxing a single fitness value)
+class TopK {
+    private TopK() {
+    }
+
+    // Index of the largest of the first n keys (the first one on ties)
+    static int argMax(double[] keys, int n) {
+        int best = 0;
+        for (int i = 1; i < n; i++) {
+            if (keys[i] > keys[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    // Puts the indices of the k largest of the first n keys into order[0, k), best first
+    // order must have room for n indices; it is used as scratch space beyond k
+    static void largest(double[] keys, int n, int k, int[] order) {
+        select(keys, n, k, order, true);
+    }
+
+    // Puts the indices of the k smallest of the first n keys into order[0, k), worst first
+    static void smallest(double[] keys, int n, int k, int[] order) {
+        select(keys, n, k, order, false);
+    }
+
+    private static void select(double[] keys, int n, int k, int[] order, boolean descending) {
+        if (k < 0 || k > n) {
+            throw new IllegalArgumentException("Cannot select " + k + " of " + n + " keys");
+        }
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        if (k == 0) {
+            return;
+        }
+        // Quickselect with a three-way partition, so a converged population full of equal fitness values doesn't
+        // degrade it to quadratic time; afterwards order[0, k) holds the k best in no particular order
+        int lo = 0;
+        int hi = n - 1;
+        int seed = n * 0x9E3779B9 + k; // deterministic pivot choice, runs stay reproducible
+        while (lo < hi) {
+            seed = seed * 1103515245 + 12345;
+            double pivot = keys[order[lo + Math.floorMod(seed >>> 1, hi - lo + 1)]];
+            // [lo, lt) better than the pivot, [lt, gt] equal to it, (gt, hi] worse
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                double key = keys[order[i]];
+                if (better(key, pivot, descending)) {
+                    swap(order, lt++, i++);
+                } else if (better(pivot, key, descending)) {
+                    swap(order, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt + 1) {
+                lo = gt + 1;
+            } else {
+                break;
+            }
+        }
+        // k is small compared to n (elites, migrants), an insertion sort ranks the selected ones
+        for (int i = 1; i < k; i++) {
+            int index = order[i];
+            int j = i - 1;
+            while (j >= 0 && better(keys[index], keys[order[j]], descending)) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+    }
+
+    private static boolean better(double a, double b, boolean descending) {
+        return descending ? a > b : a < b;
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int temp = order[i];
+        order[i] = order[j];
+        order[j] = temp;
+    }
+}
@@ -0,0 +1,173 @@
+// Permutation crossovers available to the TSP EAs
+enum TourCrossoverType {
+    ORDER,            // OX: keep a slice of one parent, fill the rest in the other parent's order
+    PARTIALLY_MAPPED, // PMX: keep a slice of one parent, the rest from the other parent, resolving clashes through the slice's mapping
+    CYCLE             // CX: every position keeps its city from one of the parents, alternating cycle by cycle
+}
+
+// Order, partially mapped and cycle crossover on int[] tours, each O(n) without boxing or allocation
+// "Is this city already in the child?" is answered by an epoch-stamped array instead of a contains() scan: a city
+// is marked when stamps[city] == epoch, and starting a new crossover just increments the epoch, so the marks never
+// have to be cleared. An instance holds that scratch state for one thread, every EA (and island) has its own.
+// Each crossover optionally records, per child, the cities whose tour neighbours are no longer the ones they had
+// in a parent (an over-approximation is fine), for the memetic stage; null records nothing.
+class TourCrossover {
+    private final int[] stamps;
+    private final int[] position; // position[city] = index of city in the first parent, for PMX and CX
+    private final boolean[] fromFirstAt; // CX: whether child1 took position i from parent1
+    private int epoch;
+
+    TourCrossover(int cities) {
+        this.stamps = new int[cities];
+        this.position = new int[cities];
+        this.fromFirstAt = new boolean[cities];
+    }
+
+    // Forgets all marks in O(1); only every 2^32 crossovers the stamps really have to be reset
+    private void newEpoch() {
+        if (++epoch == 0) {
+            java.util.Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+    private void mark(int city) {
+        stamps[city] = epoch;
+    }
+
+    private boolean marked(int city) {
+        return stamps[city] == epoch;
+    }
+
+    // OX with the slice [cut1, cut2] (inclusive): child1 keeps parent1's slice and gets the remaining cities in the
+    // order they appear in parent2 from cut2 + 1 on, wrapping around; child2 the other way round
+    void order(int[] parent1, int[] parent2, int[] child1, int[] child2, int cut1, int cut2,
+               TourChanges changes1, TourChanges changes2) {
+        orderChild(parent1, parent2, child1, cut1, cut2, changes1);
+        orderChild(parent2, parent1, child2, cut1, cut2, changes2);
+    }
+
+    // New edges: the two where the slice meets the filler cities, and one between filler cities wherever slice
+    // cities were skipped between them
+    private void orderChild(int[] slice, int[] filler, int[] child, int cut1, int cut2, TourChanges changes) {
+        int n = child.length;
+        newEpoch();
+        for (int i = cut1; i <= cut2; i++) {
+            child[i] = slice[i];
+            mark(slice[i]);
+        }
+        int firstPos = (cut2 + 1) % n;
+        int currentPos = firstPos;
+        boolean skipped = false;
+        for (int i = 0, index = currentPos; i < n; i++, index = index + 1 == n ? 0 : index + 1) {
+            int candidate = filler[index];
+            if (!marked(candidate)) {
+                if (skipped && changes != null && currentPos != firstPos) {
+                    changes.add(child[currentPos == 0 ? n - 1 : currentPos - 1]);
+                    changes.add(candidate);
+                }
+                skipped = false;
+                child[currentPos] = candidate;
+                currentPos = currentPos + 1 == n ? 0 : currentPos + 1;
+            } else {
+                skipped = true;
+            }
+        }
+        if (changes != null) {
+            changes.add(child[cut1]);
+            changes.add(child[cut1 == 0 ? n - 1 : cut1 - 1]);
+            changes.add(child[cut2]);
+            changes.add(child[firstPos]);
+        }
+    }
+
+    // PMX with the slice [cut1, cut2] (inclusive): child1 keeps parent1's slice and takes every other position
+    // from parent2; a city of parent2 that is already in the slice is replaced by following the slice's mapping
+    // (parent1[i] <-> parent2[i]) until a city outside the slice turns up. Every mapping chain is walked at most
+    // once, so this stays O(n).
+    void partiallyMapped(int[] parent1, int[] parent2, int[] child1, int[] child2, int cut1, int cut2,
+                         TourChanges changes1, TourChanges changes2) {
+        partiallyMappedChild(parent1, parent2, child1, cut1, cut2, changes1);
+        partiallyMappedChild(parent2, parent1, child2, cut1, cut2, changes2);
+    }
+
+    // New edges: where the slice meets the rest, and around every position outside the slice whose city came
+    // through the mapping instead of from the other parent
+    private void partiallyMappedChild(int[] slice, int[] other, int[] child, int cut1, int cut2, TourChanges changes) {
+        int n = child.length;
+        newEpoch();
+        for (int i = 0; i < n; i++) {
+            position[slice[i]] = i;
+        }
+        for (int i = cut1; i <= cut2; i++) {
+            child[i] = slice[i];
+            mark(slice[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            if (i >= cut1 && i <= cut2) {
+                continue;
+            }
+            int city = other[i];
+            while (marked(city)) {
+                city = other[position[city]];
+            }
+            child[i] = city;
+        }
+        if (changes == null) {
+            return;
+        }
+        changes.add(child[cut1]);
+        changes.add(child[cut1 == 0 ? n - 1 : cut1 - 1]);
+        changes.add(child[cut2]);
+        changes.add(child[cut2 + 1 == n ? 0 : cut2 + 1]);
+        for (int i = 0; i < n; i++) {
+            if ((i < cut1 || i > cut2) && child[i] != other[i]) {
+                changes.add(child[i == 0 ? n - 1 : i - 1]);
+                changes.add(child[i]);
+                changes.add(child[i + 1 == n ? 0 : i + 1]);
+            }
+        }
+    }
+
+    // CX: the positions split into cycles (follow parent2's city at a position to that city's position in parent1);
+    // child1 takes the first cycle from parent1, the second from parent2 and so on, child2 the opposite. New edges
+    // are those between neighbouring positions taken from different parents.
+    void cycle(int[] parent1, int[] parent2, int[] child1, int[] child2, TourChanges changes1, TourChanges changes2) {
+        int n = child1.length;
+        newEpoch(); // marks visited positions here, not cities
+        for (int i = 0; i < n; i++) {
+            position[parent1[i]] = i;
+        }
+        boolean fromFirst = true;
+        for (int start = 0; start < n; start++) {
+            if (marked(start)) {
+                continue;
+            }
+            int i = start;
+            do {
+                mark(i);
+                child1[i] = fromFirst ? parent1[i] : parent2[i];
+                child2[i] = fromFirst ? parent2[i] : parent1[i];
+                fromFirstAt[i] = fromFirst;
+                i = position[parent2[i]];
+            } while (i != start);
+            fromFirst = !fromFirst;
+        }
+        if (changes1 == null && changes2 == null) {
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            int next = i + 1 == n ? 0 : i + 1;
+            if (fromFirstAt[i] != fromFirstAt[next]) {
+                if (changes1 != null) {
+                    changes1.add(child1[i]);
+                    changes1.add(child1[next]);
+                }
+                if (changes2 != null) {
+                    changes2.add(child2[i]);
+                    changes2.add(child2[next]);
+                }
+            }
+        }
+    }
+}
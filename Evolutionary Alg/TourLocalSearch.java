@@ -0,0 +1,393 @@
+import java.util.Arrays;
+
+// 2-opt and Or-opt local search for the memetic stage of the TSP EAs
+// Moves are only tried towards each city's k nearest neighbours, and don't-look bits skip cities whose
+// surroundings haven't changed: a queue holds the cities still worth looking at, a city leaves it when no
+// improving move starts there and comes back when a move changes one of its edges. The first improving move found
+// is applied. Every move is a sequence of 2-opt edge exchanges on the tour array, each reversing the shorter side
+// of the cycle, with a position index so successors and predecessors are O(1).
+// A tour that was locally optimal before an operator changed it only needs the don't-look bits of the cities whose
+// neighbours changed turned off (see TourChanges); the rest of the tour starts with its bits on.
+// The neighbour lists are shared (read-only) by all copies; each copy has its own scratch state for one thread.
+class TourLocalSearch {
+    private static final double EPSILON = 1e-10; // gains below this are rounding, not improvements
+    private static final int CLOCK_CHECK_INTERVAL = 16; // cities processed between looks at the time budget
+
+    private final DistanceOracle distances;
+    private final int[] neighbors; // neighbors[c * k + i] = i-th nearest city of c
+    private final int k;
+
+    private int[] tour;
+    private final int[] position; // position[city] = index of city in tour
+    private final int[] queue;    // ring buffer of cities whose don't-look bit is off
+    private final boolean[] queued;
+    private int head;
+    private int size;
+    private boolean finished; // whether the last improve() ran until no move helped
+
+    TourLocalSearch(DistanceOracle distances, int k) {
+        this(distances, nearestNeighbors(distances, k), Math.min(k, distances.cities() - 1));
+    }
+
+    private TourLocalSearch(DistanceOracle distances, int[] neighbors, int k) {
+        this.distances = distances;
+        this.neighbors = neighbors;
+        this.k = k;
+        int n = distances.cities();
+        this.position = new int[n];
+        this.queue = new int[n];
+        this.queued = new boolean[n];
+    }
+
+    // Another local search over the same neighbour lists, for another thread (e.g. an island)
+    TourLocalSearch copy() {
+        return new TourLocalSearch(distances, neighbors, k);
+    }
+
+    int neighborCount() {
+        return k;
+    }
+
+    // Whether the last improve() ran until no move helped, i.e. left a local optimum rather than running out of time
+    boolean finished() {
+        return finished;
+    }
+
+    // The k nearest cities of every city, nearest first, found through a uniform grid of about two cities per
+    // cell: rings of cells around the city are searched until the k-th nearest so far is closer than any cell of
+    // the next ring can be. Only the order matters, so this compares squared distances.
+    static int[] nearestNeighbors(DistanceOracle distances, int k) {
+        int n = distances.cities();
+        k = Math.min(k, n - 1);
+        if (k <= 0) {
+            return new int[0];
+        }
+        double[] x = distances.x;
+        double[] y = distances.y;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < n; c++) {
+            minX = Math.min(minX, x[c]);
+            maxX = Math.max(maxX, x[c]);
+            minY = Math.min(minY, y[c]);
+            maxY = Math.max(maxY, y[c]);
+        }
+        int side = Math.max(1, (int) Math.sqrt(n / 2.0));
+        double cellSize = Math.max(Math.max(maxX - minX, maxY - minY) / side, Double.MIN_NORMAL);
+
+        // Counting sort of the cities by cell
+        int[] cellOf = new int[n];
+        int[] cellStart = new int[side * side + 1];
+        for (int c = 0; c < n; c++) {
+            int cx = Math.min(side - 1, (int) ((x[c] - minX) / cellSize));
+            int cy = Math.min(side - 1, (int) ((y[c] - minY) / cellSize));
+            cellOf[c] = cy * side + cx;
+            cellStart[cellOf[c] + 1]++;
+        }
+        for (int cell = 0; cell < side * side; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        int[] cellCities = new int[n];
+        int[] fill = Arrays.copyOf(cellStart, side * side);
+        for (int c = 0; c < n; c++) {
+            cellCities[fill[cellOf[c]]++] = c;
+        }
+
+        int[] neighbors = new int[n * k];
+        double[] best = new double[k]; // squared distances of the k nearest so far, ascending
+        int[] bestCity = new int[k];
+        for (int c = 0; c < n; c++) {
+            int found = 0;
+            int cx = cellOf[c] % side;
+            int cy = cellOf[c] / side;
+            for (int ring = 0; ring < side; ring++) {
+                double reach = (ring - 1) * cellSize; // anything in this ring is at least this far away
+                if (found == k && ring > 1 && best[k - 1] <= reach * reach) {
+                    break;
+                }
+                for (int gy = Math.max(0, cy - ring); gy <= Math.min(side - 1, cy + ring); gy++) {
+                    boolean edgeRow = gy == cy - ring || gy == cy + ring;
+                    for (int gx = Math.max(0, cx - ring); gx <= Math.min(side - 1, cx + ring); gx++) {
+                        if (!edgeRow && gx != cx - ring && gx != cx + ring) {
+                            continue; // inner cells were searched in earlier rings
+                        }
+                        int cell = gy * side + gx;
+                        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                            int other = cellCities[i];
+                            if (other == c) {
+                                continue;
+                            }
+                            double d = distances.squaredDistance(c, other);
+                            if (found == k && d >= best[k - 1]) {
+                                continue;
+                            }
+                            // insertion into the sorted top k
+                            int j = found == k ? k - 1 : found++;
+                            for (; j > 0 && best[j - 1] > d; j--) {
+                                best[j] = best[j - 1];
+                                bestCity[j] = bestCity[j - 1];
+                            }
+                            best[j] = d;
+                            bestCity[j] = other;
+                        }
+                    }
+                }
+            }
+            System.arraycopy(bestCity, 0, neighbors, c * k, k);
+        }
+        return neighbors;
+    }
+
+    // Improves the tour in place until no 2-opt or Or-opt move towards the neighbour lists helps or the budget
+    // (in nanoseconds, 0 for none) runs out, and returns by how much the tour got shorter
+    double improve(int[] tour, long budgetNanos) {
+        return improve(tour, null, budgetNanos);
+    }
+
+    // Same for a tour that was locally optimal (improve() finished on it) until an operator changed the neighbours
+    // of the given cities: only those start with their don't-look bits off. null starts with every city.
+    double improve(int[] tour, TourChanges changes, long budgetNanos) {
+        int n = tour.length;
+        finished = true;
+        if (n < 5) {
+            return 0;
+        }
+        this.tour = tour;
+        for (int i = 0; i < n; i++) {
+            position[tour[i]] = i;
+        }
+        head = 0;
+        size = 0;
+        if (changes == null) {
+            for (int i = 0; i < n; i++) {
+                push(tour[i]);
+            }
+        } else {
+            for (int i = 0; i < changes.count(); i++) {
+                push(changes.city(i));
+            }
+        }
+        long deadline = System.nanoTime() + budgetNanos;
+        double gain = 0;
+        for (int processed = 1; size > 0; processed++) {
+            if (budgetNanos > 0 && processed % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                break;
+            }
+            int city = queue[head];
+            head = head + 1 == n ? 0 : head + 1;
+            size--;
+            queued[city] = false;
+            double moveGain = twoOpt(city);
+            if (moveGain == 0) {
+                moveGain = orOpt(city);
+            }
+            gain += moveGain;
+        }
+        finished = size == 0;
+        while (size > 0) { // budget ran out, reset the bits for the next tour
+            queued[queue[head]] = false;
+            head = head + 1 == n ? 0 : head + 1;
+            size--;
+        }
+        this.tour = null;
+        return gain;
+    }
+
+    // First improving 2-opt move that gives city a a nearer neighbour as its successor or predecessor
+    private double twoOpt(int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            int b = direction == 0 ? next(a) : previous(a);
+            double removed = distances.distance(a, b);
+            for (int i = 0; i < k; i++) {
+                int c = neighbors[a * k + i];
+                double closer = removed - distances.distance(a, c);
+                if (closer <= EPSILON) {
+                    break; // neighbours are sorted, none further down helps either
+                }
+                int d = direction == 0 ? next(c) : previous(c);
+                if (c == b || d == a) {
+                    continue;
+                }
+                double gain = closer + distances.distance(c, d) - distances.distance(b, d);
+                if (gain > EPSILON) {
+                    exchange(a, b, c, d);
+                    activate(a, b, c, d);
+                    return gain;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // First improving move of a segment of one to three cities that starts at a and runs either way along the
+    // tour, taken out and put back with a next to one of its neighbours, in either orientation
+    private double orOpt(int a) {
+        int n = tour.length;
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int outside = forward ? previous(a) : next(a); // a's neighbour outside the segment
+            int last = a;
+            for (int length = 1; length <= 3 && length + 3 <= n; length++, last = forward ? next(last) : previous(last)) {
+                int beyond = forward ? next(last) : previous(last);
+                double removed = distances.distance(outside, a) + distances.distance(last, beyond) - distances.distance(outside, beyond);
+                if (removed <= EPSILON) {
+                    continue;
+                }
+                for (int i = 0; i < k; i++) {
+                    int c = neighbors[a * k + i];
+                    double attach = distances.distance(a, c);
+                    if (attach >= removed - EPSILON) {
+                        break;
+                    }
+                    if (inSegment(c, a, length, forward)) {
+                        continue;
+                    }
+                    // a meets c, last meets e on either side of c
+                    for (int side = 0; side < 2; side++) {
+                        int e = side == 0 ? next(c) : previous(c);
+                        if (inSegment(e, a, length, forward)) {
+                            continue;
+                        }
+                        double gain = removed - (attach + distances.distance(last, e) - distances.distance(c, e));
+                        if (gain > EPSILON) {
+                            int x = side == 0 ? c : e; // the edge x -> y the segment goes into, in tour direction
+                            int y = side == 0 ? e : c;
+                            if (forward) {
+                                moveSegment(outside, a, last, beyond, x, y, side == 0);
+                            } else {
+                                moveSegment(beyond, last, a, outside, x, y, side == 1);
+                            }
+                            activate(outside, beyond, a, last);
+                            activate(c, e, c, e);
+                            return gain;
+                        }
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Moves the segment first..last (before -> first ... last -> after) into the edge x -> y, so that x meets last
+    // and first meets y, or x meets first and last meets y when keepDirection: three 2-opt exchanges, or two
+    private void moveSegment(int before, int first, int last, int after, int x, int y, boolean keepDirection) {
+        exchange(before, first, x, y);  // before - x, first - y
+        exchange(before, x, after, last); // before - after, x - last
+        if (keepDirection) {
+            exchange(x, last, first, y);  // x - first, last - y
+        }
+    }
+
+    private boolean inSegment(int city, int first, int length, boolean forward) {
+        for (int i = 0, c = first; i < length; i++, c = forward ? next(c) : previous(c)) {
+            if (c == city) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 2-opt: replaces the edges {a, b} and {c, d} by {a, c} and {b, d}, which must leave a single cycle, i.e. the
+    // edges run a -> b ... c -> d or b -> a ... d -> c
+    private void exchange(int a, int b, int c, int d) {
+        if (next(a) == b) {
+            reversePath(b, c);
+        } else {
+            reversePath(a, d);
+        }
+    }
+
+    // Reverses the path from city first to city last (in tour direction); when that's more than half the tour
+    // the rest of the cycle is reversed instead, which gives the same cycle
+    private void reversePath(int first, int last) {
+        int n = tour.length;
+        int i = position[first];
+        int j = position[last];
+        int length = j >= i ? j - i + 1 : j - i + 1 + n;
+        if (2 * length > n) {
+            int from = j + 1 == n ? 0 : j + 1;
+            j = i == 0 ? n - 1 : i - 1;
+            i = from;
+            length = n - length;
+        }
+        for (int step = 0; step < length / 2; step++) {
+            int cityI = tour[i];
+            int cityJ = tour[j];
+            tour[i] = cityJ;
+            position[cityJ] = i;
+            tour[j] = cityI;
+            position[cityI] = j;
+            i = i + 1 == n ? 0 : i + 1;
+            j = j == 0 ? n - 1 : j - 1;
+        }
+    }
+
+    private int next(int city) {
+        int i = position[city] + 1;
+        return tour[i == tour.length ? 0 : i];
+    }
+
+    private int previous(int city) {
+        int i = position[city];
+        return tour[i == 0 ? tour.length - 1 : i - 1];
+    }
+
+    // Turns the don't-look bits of the given cities off again
+    private void activate(int a, int b, int c, int d) {
+        push(a);
+        push(b);
+        push(c);
+        push(d);
+    }
+
+    private void push(int city) {
+        if (!queued[city]) {
+            queued[city] = true;
+            int tail = head + size;
+            queue[tail >= queue.length ? tail - queue.length : tail] = city;
+            size++;
+        }
+    }
+}
+
+// Cities whose tour neighbours an operator changed (crossover, mutation), so local search on a formerly locally
+// optimal tour only has to look at those. Duplicates are dropped through an epoch stamp, like TourCrossover's marks,
+// so clearing is O(1).
+class TourChanges {
+    private final int[] cities;
+    private final int[] stamps;
+    private int epoch = 1;
+    private int count;
+
+    TourChanges(int cities) {
+        this.cities = new int[cities];
+        this.stamps = new int[cities];
+    }
+
+    void clear() {
+        count = 0;
+        if (++epoch == 0) {
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+    void add(int city) {
+        if (stamps[city] != epoch) {
+            stamps[city] = epoch;
+            cities[count++] = city;
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    int city(int i) {
+        return cities[i];
+    }
+}
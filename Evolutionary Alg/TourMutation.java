@@ -0,0 +1,159 @@
+// Mutations available to the TSP EAs
+enum TourMutationType {
+    SWAP,    // exchange two cities
+    TWO_OPT, // reverse a segment of the tour
+    OR_OPT   // move a segment of one to three cities elsewhere in the tour
+}
+
+// Tour mutations that return the change in tour length, computed from the few edges they replace, so a mutated
+// tour with a known length doesn't need an O(n) evaluation. Applying a 2-opt or Or-opt move still shifts the cities
+// between its positions; only the evaluation is O(1). Passing null distances applies the move without the delta.
+// Non-null TourChanges get the cities at the ends of the replaced edges, for the memetic stage.
+class TourMutation {
+    private TourMutation() {
+    }
+
+    // Applies one mutation of the given type at positions drawn from the engine and returns the length delta
+    // (0 when distances is null). SWAP draws its positions exactly like the swap mutation always has.
+    static double apply(TourMutationType type, int[] tour, MutationEngine engine, DistanceOracle distances,
+                        TourChanges changes) {
+        int n = tour.length;
+        switch (type) {
+            case SWAP:
+                return swap(tour, engine.nextInt(n), engine.nextInt(n), distances, changes);
+            case TWO_OPT: {
+                int i = engine.nextInt(n);
+                int j = engine.nextInt(n);
+                if (i > j) {
+                    int temp = i;
+                    i = j;
+                    j = temp;
+                }
+                // reversing the whole tour only changes its direction
+                return j - i < n - 1 ? reverse(tour, i, j, distances, changes) : 0;
+            }
+            default: {
+                if (n < 4) {
+                    return 0; // every order of three cities is the same cycle
+                }
+                int length = 1 + engine.nextInt(Math.min(3, n - 3));
+                int from = engine.nextInt(n - length + 1);
+                // any edge not touching the segment, counted from the one after it
+                int after = (from + length + engine.nextInt(n - length - 1)) % n;
+                return move(tour, from, length, after, distances, changes);
+            }
+        }
+    }
+
+    // Exchanges the cities at positions i and j
+    static double swap(int[] tour, int i, int j, DistanceOracle distances, TourChanges changes) {
+        if (i == j) {
+            return 0;
+        }
+        if (changes != null) {
+            int n = tour.length;
+            changes.add(tour[i == 0 ? n - 1 : i - 1]);
+            changes.add(tour[i]);
+            changes.add(tour[i == n - 1 ? 0 : i + 1]);
+            changes.add(tour[j == 0 ? n - 1 : j - 1]);
+            changes.add(tour[j]);
+            changes.add(tour[j == n - 1 ? 0 : j + 1]);
+        }
+        if (distances == null) {
+            exchange(tour, i, j);
+            return 0;
+        }
+        double before = edgesAroundSwap(tour, i, j, distances);
+        exchange(tour, i, j);
+        return edgesAroundSwap(tour, i, j, distances) - before;
+    }
+
+    // Reverses positions i..j (i < j, not the whole tour), which replaces the two edges at the segment's ends
+    static double reverse(int[] tour, int i, int j, DistanceOracle distances, TourChanges changes) {
+        double delta = 0;
+        int n = tour.length;
+        int before = tour[i == 0 ? n - 1 : i - 1];
+        int after = tour[j == n - 1 ? 0 : j + 1];
+        if (changes != null) {
+            changes.add(before);
+            changes.add(tour[i]);
+            changes.add(tour[j]);
+            changes.add(after);
+        }
+        if (distances != null) {
+            delta = distances.distance(before, tour[j]) + distances.distance(tour[i], after)
+                    - distances.distance(before, tour[i]) - distances.distance(tour[j], after);
+        }
+        reverseRange(tour, i, j);
+        return delta;
+    }
+
+    // Moves the segment at positions from..from + length - 1 between the cities at positions after and after + 1
+    // (an edge not touching the segment): three edges are replaced. The segment keeps its direction, the cities in
+    // between shift over by a rotation of the range made of three reversals, so nothing is allocated.
+    static double move(int[] tour, int from, int length, int after, DistanceOracle distances, TourChanges changes) {
+        int n = tour.length;
+        int last = from + length - 1;
+        double delta = 0;
+        int previous = tour[from == 0 ? n - 1 : from - 1];
+        int next = tour[last == n - 1 ? 0 : last + 1];
+        int left = tour[after];
+        int right = tour[after == n - 1 ? 0 : after + 1];
+        if (changes != null) {
+            changes.add(previous);
+            changes.add(next);
+            changes.add(left);
+            changes.add(right);
+            changes.add(tour[from]);
+            changes.add(tour[last]);
+        }
+        if (distances != null) {
+            delta = distances.distance(previous, next) + distances.distance(left, tour[from]) + distances.distance(tour[last], right)
+                    - distances.distance(previous, tour[from]) - distances.distance(tour[last], next) - distances.distance(left, right);
+        }
+        if (after > last) {
+            // rotate from..after left by length
+            reverseRange(tour, from, last);
+            reverseRange(tour, last + 1, after);
+            reverseRange(tour, from, after);
+        } else {
+            // after < from - 1: rotate after + 1..last right by length
+            reverseRange(tour, after + 1, from - 1);
+            reverseRange(tour, from, last);
+            reverseRange(tour, after + 1, last);
+        }
+        return delta;
+    }
+
+    // Length of the edges leaving positions i - 1, i, j - 1 and j, each edge once: the ones a swap of i and j changes
+    private static double edgesAroundSwap(int[] tour, int i, int j, DistanceOracle distances) {
+        int n = tour.length;
+        int beforeI = i == 0 ? n - 1 : i - 1;
+        int beforeJ = j == 0 ? n - 1 : j - 1;
+        double sum = edge(tour, i, distances) + edge(tour, j, distances);
+        if (beforeI != j) {
+            sum += edge(tour, beforeI, distances);
+        }
+        if (beforeJ != i) {
+            sum += edge(tour, beforeJ, distances);
+        }
+        return sum;
+    }
+
+    // Length of the edge from position k to the next one
+    private static double edge(int[] tour, int k, DistanceOracle distances) {
+        return distances.distance(tour[k], tour[k == tour.length - 1 ? 0 : k + 1]);
+    }
+
+    private static void exchange(int[] tour, int i, int j) {
+        int city = tour[i];
+        tour[i] = tour[j];
+        tour[j] = city;
+    }
+
+    private static void reverseRange(int[] tour, int i, int j) {
+        for (; i < j; i++, j--) {
+            exchange(tour, i, j);
+        }
+    }
+}